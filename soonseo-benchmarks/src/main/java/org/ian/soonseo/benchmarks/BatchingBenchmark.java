@@ -0,0 +1,71 @@
+package org.ian.soonseo.benchmarks;
+
+import org.ian.soonseo.Batching;
+import org.ian.soonseo.Config;
+import org.ian.soonseo.Job;
+import org.ian.soonseo.Queue;
+import org.ian.soonseo.store.InFlightJobStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+// "Write one row" jobs against a store that charges a fixed round-trip per call, run one by one and through a
+// batch handler that writes each group in a single call.
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchingBenchmark {
+
+    private static final int JOBS_PER_OP = 1024;
+
+    // 1 runs every job on its own
+    @Param({"1", "16", "128"})
+    public int maxBatchSize;
+
+    @Param({"50"})
+    public long roundTripMicros;
+
+    private final AtomicReference<CountDownLatch> latch = new AtomicReference<>();
+    private Queue queue;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Config config = new Config(64 * 1024, 1, 3, 1);
+        if (maxBatchSize > 1)
+            config = config.withBatching(Batching.of(maxBatchSize, 0).withHandler("WriteRow", jobs -> {
+                roundTrip();
+                for (int i = 0; i < jobs.size(); i++)
+                    latch.get().countDown();
+            }));
+        queue = new Queue(config, new InFlightJobStore());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        queue.shutdown();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void writeRows() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(JOBS_PER_OP);
+        latch.set(done);
+        for (int i = 0; i < JOBS_PER_OP; i++) {
+            queue.submit(new Job("WriteRow", "row" + i, () -> {
+                roundTrip();
+                done.countDown();
+            }));
+        }
+        done.await();
+    }
+
+    private void roundTrip() {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(roundTripMicros));
+    }
+
+}
@@ -0,0 +1,52 @@
+package org.ian.soonseo.benchmarks;
+
+import org.ian.soonseo.Config;
+import org.ian.soonseo.Job;
+import org.ian.soonseo.Overflow;
+import org.ian.soonseo.Queue;
+import org.ian.soonseo.store.InFlightJobStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// Drains a fixed burst of jobs through queues of different Config.bufferSize.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BufferSizeBenchmark {
+
+    private static final int JOBS_PER_OP = 4096;
+
+    @Param({"64", "1024", "16384", "262144"})
+    public int bufferSize;
+
+    @Param({"2"})
+    public int workerSize;
+
+    private Queue queue;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        queue = new Queue(new Config(bufferSize, workerSize, 0, 0).withOverflow(Overflow.block(60_000)),
+                new InFlightJobStore());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        queue.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(JOBS_PER_OP)
+    public void burst() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(JOBS_PER_OP);
+        for (int i = 0; i < JOBS_PER_OP; i++)
+            queue.submit(new Job("burst", "", latch::countDown));
+        latch.await();
+    }
+
+}
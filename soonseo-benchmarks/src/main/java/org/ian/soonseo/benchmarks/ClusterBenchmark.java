@@ -0,0 +1,99 @@
+package org.ian.soonseo.benchmarks;
+
+import org.ian.soonseo.Cluster;
+import org.ian.soonseo.ClusterNode;
+import org.ian.soonseo.Config;
+import org.ian.soonseo.FunctionRegistry;
+import org.ian.soonseo.Job;
+import org.ian.soonseo.Queue;
+import org.ian.soonseo.store.InFlightJobStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Two cluster members on localhost. Keyed jobs are submitted through member 0 with keys that hash either to member 0
+// itself or to member 1, so "remote" measures end-to-end throughput of jobs framed, sent over TCP, rebuilt and run
+// on the peer against the same jobs run locally.
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClusterBenchmark {
+
+    private static final int JOBS_PER_OP = 4096;
+    private static final int KEYS = 64;
+
+    @Param({"local", "remote"})
+    public String target;
+
+    private final AtomicReference<CountDownLatch> latch = new AtomicReference<>();
+    private final List<Queue> queues = new ArrayList<>();
+    private final List<ClusterNode> nodes = new ArrayList<>();
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        List<InetSocketAddress> members = List.of(loopback(), loopback());
+        FunctionRegistry registry = new FunctionRegistry()
+                .register("Count", args -> () -> {
+                    latch.get().countDown();
+                    return null;
+                });
+        for (int i = 0; i < members.size(); i++) {
+            Queue queue = new Queue(new Config(64 * 1024, 2, 3, 1), new InFlightJobStore());
+            queues.add(queue);
+            nodes.add(new ClusterNode(queue, Cluster.of(members, i, registry)).start());
+        }
+        while (nodes.stream().anyMatch(node -> node.captureMetrics().livePeers() == 0))
+            Thread.sleep(10);
+
+        int owner = "local".equals(target) ? 0 : 1;
+        keys = new String[KEYS];
+        for (int i = 0, found = 0; found < KEYS; i++) {
+            if (nodes.get(0).ownerOf("key-" + i) == owner)
+                keys[found++] = "key-" + i;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        for (ClusterNode node : nodes)
+            node.close();
+        for (Queue queue : queues)
+            queue.shutdown();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(JOBS_PER_OP)
+    public void submitKeyed() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(JOBS_PER_OP);
+        latch.set(done);
+        ClusterNode entry = nodes.get(0);
+        for (int i = 0; i < JOBS_PER_OP; i++) {
+            Job job = new Job("Count", "", () -> {
+                done.countDown();
+                return null;
+            });
+            job.setPartitionKey(keys[i % KEYS]);
+            entry.submit(job);
+        }
+        done.await();
+    }
+
+    private static InetSocketAddress loopback() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), socket.getLocalPort());
+        }
+    }
+
+}
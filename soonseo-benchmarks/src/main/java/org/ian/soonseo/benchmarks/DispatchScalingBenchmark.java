@@ -0,0 +1,59 @@
+package org.ian.soonseo.benchmarks;
+
+import org.ian.soonseo.Config;
+import org.ian.soonseo.DispatchMode;
+import org.ian.soonseo.Job;
+import org.ian.soonseo.Queue;
+import org.ian.soonseo.store.InFlightJobStore;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DispatchScalingBenchmark {
+
+    private static final int JOBS_PER_OP = 1024;
+
+    @Param({"SERIAL", "PARALLEL"})
+    public DispatchMode dispatchMode;
+
+    @Param({"1", "2", "4", "8"})
+    public int workerSize;
+
+    @Param({"1000"})
+    public long tokensPerJob;
+
+    private Queue queue;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        queue = new Queue(new Config(64 * 1024, workerSize, 3, 1).withDispatchMode(dispatchMode),
+                new InFlightJobStore());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        queue.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(JOBS_PER_OP)
+    public void cpuBoundJobs() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(JOBS_PER_OP);
+        for (int i = 0; i < JOBS_PER_OP; i++) {
+            queue.submit(new Job("cpu", "", () -> {
+                Blackhole.consumeCPU(tokensPerJob);
+                latch.countDown();
+            }));
+        }
+        latch.await();
+    }
+
+}
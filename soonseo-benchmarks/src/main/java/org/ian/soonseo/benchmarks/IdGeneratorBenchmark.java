@@ -0,0 +1,87 @@
+package org.ian.soonseo.benchmarks;
+
+import org.ian.soonseo.utils.IdGenerator;
+import org.ian.soonseo.utils.JobId;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdGeneratorBenchmark {
+
+    private static final String ID_FORMAT = "%08x-%04x-%04x-%04x-%012x";
+
+    // The single counter every thread used to CAS on, kept as the baseline for the contended cases
+    private static final AtomicLong sharedTick = new AtomicLong();
+
+    // The String.format based implementation this replaced, kept as the baseline
+    private static String legacyGenId() {
+        long timestamp = System.currentTimeMillis();
+        long timePart = timestamp & 0xFFFFFFFFFFFFL;
+        long randomPartA = ThreadLocalRandom.current().nextLong() & 0xFFFFFFFFFFFFFL;
+        long randomPartB = ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL;
+        long version = 0x7000L;
+        long mostSigBits = (timePart << 16) | version | ((randomPartA >>> 32) & 0xFFFFL);
+        long leastSigBits = (randomPartA << 32) | (randomPartB & 0xFFFFFFFFL);
+
+        return String.format(ID_FORMAT,
+                (mostSigBits >> 32) & 0xFFFFFFFFL,
+                (mostSigBits >> 16) & 0xFFFFL,
+                (mostSigBits) & 0xFFFFL,
+                (leastSigBits >> 48) & 0xFFFFL,
+                (leastSigBits) & 0xFFFFFFFFFFFFL);
+    }
+
+    private static JobId sharedCounterNextId() {
+        long now = (System.currentTimeMillis() & 0xFFFFFFFFFFFFL) << 12;
+        long prev;
+        long next;
+        do {
+            prev = sharedTick.get();
+            next = Math.max(now, prev + 1);
+        } while (!sharedTick.compareAndSet(prev, next));
+        return new JobId(((next >>> 12) << 16) | 0x7000L | (next & 0xFFF),
+                0x8000000000000000L | (ThreadLocalRandom.current().nextLong() >>> 2));
+    }
+
+    @Benchmark
+    public String legacyFormat() {
+        return legacyGenId();
+    }
+
+    @Benchmark
+    public String genId() {
+        return IdGenerator.genId();
+    }
+
+    @Benchmark
+    public JobId nextId() {
+        return IdGenerator.nextId();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String genIdContended() {
+        return IdGenerator.genId();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public JobId nextIdContended() {
+        return IdGenerator.nextId();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public JobId sharedCounterContended() {
+        return sharedCounterNextId();
+    }
+
+}
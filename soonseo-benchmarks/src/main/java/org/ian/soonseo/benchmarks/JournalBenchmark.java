@@ -0,0 +1,70 @@
+package org.ian.soonseo.benchmarks;
+
+import org.ian.soonseo.Config;
+import org.ian.soonseo.Durability;
+import org.ian.soonseo.FunctionRegistry;
+import org.ian.soonseo.Job;
+import org.ian.soonseo.Overflow;
+import org.ian.soonseo.Queue;
+import org.ian.soonseo.store.InFlightJobStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Submit throughput with the write-ahead journal off, forced in the background every few milliseconds,
+// and with group commit where submit waits for its record to reach the disk.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JournalBenchmark {
+
+    private static final Runnable NO_OP = () -> {};
+
+    @Param({"NONE", "ASYNC", "GROUP_COMMIT"})
+    public String durability;
+
+    private Path directory;
+    private Queue queue;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("soonseo-journal");
+        Config config = new Config(65536, 2, 0, 0).withOverflow(Overflow.block(60_000));
+        Durability journal = Durability.journal(directory, new FunctionRegistry().register("noop", args -> () -> null));
+        config = switch (durability) {
+            case "ASYNC" -> config.withDurability(journal.withAwaitSync(false));
+            case "GROUP_COMMIT" -> config.withDurability(journal);
+            default -> config;
+        };
+        queue = new Queue(config, new InFlightJobStore());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        queue.shutdown();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void singleProducer() {
+        queue.submit(new Job("noop", "", NO_OP));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void fourProducers() {
+        queue.submit(new Job("noop", "", NO_OP));
+    }
+
+}
@@ -0,0 +1,70 @@
+package org.ian.soonseo.benchmarks;
+
+import org.ian.soonseo.Config;
+import org.ian.soonseo.Job;
+import org.ian.soonseo.JobStatus;
+import org.ian.soonseo.Overflow;
+import org.ian.soonseo.Queue;
+import org.ian.soonseo.WaitStrategyType;
+import org.ian.soonseo.store.InFlightJobStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// End-to-end latency from submit until the job is observed as COMPLETED.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LatencyBenchmark {
+
+    private static final Runnable NO_OP = () -> {};
+
+    @Param({"1024"})
+    public int bufferSize;
+
+    @Param({"1", "4"})
+    public int workerSize;
+
+    @Param({"BUSY_SPIN", "YIELDING", "SLEEPING", "BLOCKING", "PHASED_BACKOFF"})
+    public WaitStrategyType waitStrategy;
+
+    private Queue queue;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        queue = new Queue(new Config(bufferSize, workerSize, 0, 0).withOverflow(Overflow.block(60_000))
+                .withWaitStrategy(waitStrategy),
+                new InFlightJobStore());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        queue.shutdown();
+    }
+
+    private JobStatus submitAndAwait() {
+        Job job = new Job("noop", "", NO_OP);
+        queue.submit(job);
+
+        JobStatus status;
+        while (!(status = job.getStatus()).isTerminal())
+            Thread.onSpinWait();
+        return status;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public JobStatus singleProducer() {
+        return submitAndAwait();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public JobStatus fourProducers() {
+        return submitAndAwait();
+    }
+
+}
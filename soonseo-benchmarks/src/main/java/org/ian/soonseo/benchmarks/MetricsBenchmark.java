@@ -0,0 +1,83 @@
+package org.ian.soonseo.benchmarks;
+
+import org.ian.soonseo.Config;
+import org.ian.soonseo.Job;
+import org.ian.soonseo.Overflow;
+import org.ian.soonseo.Queue;
+import org.ian.soonseo.metrics.CapturedQueueMetrics;
+import org.ian.soonseo.metrics.CapturedWorkerMetrics;
+import org.ian.soonseo.store.InFlightJobStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+// Cost of taking metrics snapshots, which scales with the number of workers. The loaded groups take the same
+// snapshots while two producers keep submitting and the workers keep consuming, so the counters and histograms
+// being read are the ones being written.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+    private static final Callable<Object> NO_OP = () -> null;
+
+    @Param({"1", "8", "64"})
+    public int workerSize;
+
+    private Queue queue;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        queue = new Queue(new Config(1024, workerSize, 0, 0).withOverflow(Overflow.block(60_000)),
+                new InFlightJobStore());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        queue.shutdown();
+    }
+
+    @Benchmark
+    public CapturedQueueMetrics captureQueueMetrics() {
+        return queue.captureQueueMetrics();
+    }
+
+    @Benchmark
+    public List<CapturedWorkerMetrics> captureWorkerMetrics() {
+        return queue.captureWorkerMetrics();
+    }
+
+    @Benchmark
+    @Group("loadedQueueMetrics")
+    @GroupThreads(1)
+    public CapturedQueueMetrics captureQueueMetricsUnderLoad() {
+        return queue.captureQueueMetrics();
+    }
+
+    @Benchmark
+    @Group("loadedQueueMetrics")
+    @GroupThreads(2)
+    public void submitWhileCapturingQueueMetrics() {
+        queue.submit(new Job("noop", "", NO_OP));
+    }
+
+    @Benchmark
+    @Group("loadedWorkerMetrics")
+    @GroupThreads(1)
+    public List<CapturedWorkerMetrics> captureWorkerMetricsUnderLoad() {
+        return queue.captureWorkerMetrics();
+    }
+
+    @Benchmark
+    @Group("loadedWorkerMetrics")
+    @GroupThreads(2)
+    public void submitWhileCapturingWorkerMetrics() {
+        queue.submit(new Job("noop", "", NO_OP));
+    }
+
+}
@@ -0,0 +1,91 @@
+package org.ian.soonseo.benchmarks;
+
+import org.ian.soonseo.Config;
+import org.ian.soonseo.Job;
+import org.ian.soonseo.JobStatus;
+import org.ian.soonseo.LaneScheduling;
+import org.ian.soonseo.Priority;
+import org.ian.soonseo.PriorityLanes;
+import org.ian.soonseo.Queue;
+import org.ian.soonseo.store.InFlightJobStore;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+// Submit-to-COMPLETED latency of HIGH priority jobs while a background producer keeps the queue full of LOW jobs.
+// With NONE every urgent job waits behind the bulk backlog; with lanes its p99 should stay close to an idle queue.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PriorityLaneBenchmark {
+
+    private static final Runnable NO_OP = () -> {};
+    private static final Runnable BULK_WORK = () -> Blackhole.consumeCPU(1_000);
+
+    @Param({"NONE", "STRICT", "WEIGHTED"})
+    public LaneScheduling scheduling;
+
+    @Param({"2"})
+    public int workerSize;
+
+    private Queue queue;
+    private Thread bulkProducer;
+    private volatile boolean running;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        PriorityLanes lanes = switch (scheduling) {
+            case NONE -> PriorityLanes.none();
+            case STRICT -> PriorityLanes.strict();
+            case WEIGHTED -> PriorityLanes.weighted(8, 4, 1);
+        };
+        // No submit retries: a full buffer rejects immediately and each side decides how to retry
+        queue = new Queue(new Config(1024, workerSize, 0, 0).withPriorityLanes(lanes), new InFlightJobStore());
+
+        running = true;
+        bulkProducer = Thread.ofPlatform().daemon().start(() -> {
+            while (running) {
+                Job job = new Job("bulk", "", BULK_WORK);
+                job.setPriority(Priority.LOW);
+                try {
+                    queue.submit(job);
+                } catch (RejectedExecutionException e) {
+                    Thread.onSpinWait();
+                }
+            }
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        running = false;
+        bulkProducer.join();
+        queue.shutdown();
+    }
+
+    @Benchmark
+    public JobStatus urgentUnderBacklog() {
+        Job job;
+        while (true) {
+            job = new Job("urgent", "", NO_OP);
+            job.setPriority(Priority.HIGH);
+            try {
+                queue.submit(job);
+                break;
+            } catch (RejectedExecutionException e) {
+                Thread.onSpinWait();
+            }
+        }
+
+        JobStatus status;
+        while (!(status = job.getStatus()).isTerminal())
+            Thread.onSpinWait();
+        return status;
+    }
+
+}
@@ -0,0 +1,139 @@
+package org.ian.soonseo.benchmarks;
+
+import com.lmax.disruptor.EventTranslatorOneArg;
+import com.lmax.disruptor.dsl.ProducerType;
+import org.ian.soonseo.BatchSubmitResult;
+import org.ian.soonseo.Config;
+import org.ian.soonseo.Job;
+import org.ian.soonseo.JobEvent;
+import org.ian.soonseo.Overflow;
+import org.ian.soonseo.Queue;
+import org.ian.soonseo.SlotTask;
+import org.ian.soonseo.store.InFlightJobStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Producer-side cost of Queue.submit with 1..N concurrent submitters. Jobs are no-ops so the
+// consumers keep up and the numbers reflect slot claiming, publishing and tracking. The publish variants write
+// into the slot through a translator instead of allocating a Job; run with -prof gc to compare gc.alloc.rate.norm.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SubmitBenchmark {
+
+    private static final Runnable NO_OP = () -> {};
+    private static final int BATCH_SIZE = 64;
+    private static final SlotTask<Object> NO_OP_TASK = (payload, value) -> null;
+    private static final EventTranslatorOneArg<JobEvent, Object> NO_OP_TRANSLATOR =
+            (event, sequence, payload) -> event.setTask("noop", "", NO_OP_TASK, payload, sequence);
+    private static final Object PAYLOAD = new Object();
+
+    @Param({"65536"})
+    public int bufferSize;
+
+    @Param({"2"})
+    public int workerSize;
+
+    private Queue queue;
+    private Queue singleProducerQueue;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // A full buffer makes submit wait instead of rejecting, and batch submits spin on zero-backoff retries
+        Config config = new Config(bufferSize, workerSize, Integer.MAX_VALUE, 0).withOverflow(Overflow.block(60_000));
+        queue = new Queue(config, new InFlightJobStore());
+        singleProducerQueue = new Queue(config.withProducerType(ProducerType.SINGLE), new InFlightJobStore());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        queue.shutdown();
+        singleProducerQueue.shutdown();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void singleProducerSequencer() {
+        singleProducerQueue.submit(new Job("noop", "", NO_OP));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void singleProducer() {
+        queue.submit(new Job("noop", "", NO_OP));
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void twoProducers() {
+        queue.submit(new Job("noop", "", NO_OP));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void fourProducers() {
+        queue.submit(new Job("noop", "", NO_OP));
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void eightProducers() {
+        queue.submit(new Job("noop", "", NO_OP));
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void sixteenProducers() {
+        queue.submit(new Job("noop", "", NO_OP));
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void thirtyTwoProducers() {
+        queue.submit(new Job("noop", "", NO_OP));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void publishSingleProducer() {
+        publish();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void publishFourProducers() {
+        publish();
+    }
+
+    @Benchmark
+    @Threads(1)
+    @OperationsPerInvocation(BATCH_SIZE)
+    public BatchSubmitResult batchSingleProducer() {
+        return queue.submit(newBatch());
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(BATCH_SIZE)
+    public BatchSubmitResult batchFourProducers() {
+        return queue.submit(newBatch());
+    }
+
+    // A full buffer spins rather than counting as a rejection, like submit with unlimited retries
+    private void publish() {
+        while (!queue.publish(NO_OP_TRANSLATOR, PAYLOAD))
+            Thread.yield();
+    }
+
+    private static Job[] newBatch() {
+        Job[] jobs = new Job[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++)
+            jobs[i] = new Job("noop", "", NO_OP);
+        return jobs;
+    }
+
+}
@@ -0,0 +1,85 @@
+package org.ian.soonseo.benchmarks;
+
+import org.ian.soonseo.Config;
+import org.ian.soonseo.DispatchMode;
+import org.ian.soonseo.Job;
+import org.ian.soonseo.Queue;
+import org.ian.soonseo.store.InFlightJobStore;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Round-robin PARALLEL dispatch vs WORK_STEALING on a mix of short jobs and the occasional long one.
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorkStealingBenchmark {
+
+    private static final int JOBS_PER_OP = 1024;
+
+    @Param({"PARALLEL", "WORK_STEALING"})
+    public DispatchMode dispatchMode;
+
+    @Param({"4"})
+    public int workerSize;
+
+    // One job in every longEvery sleeps for longMicros; the rest burn shortTokens of CPU
+    @Param({"64"})
+    public int longEvery;
+
+    @Param({"2000"})
+    public long longMicros;
+
+    @Param({"200"})
+    public long shortTokens;
+
+    private Queue queue;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        queue = new Queue(new Config(64 * 1024, workerSize, 3, 1).withDispatchMode(dispatchMode),
+                new InFlightJobStore());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        queue.shutdown();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void mixedBurst() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(JOBS_PER_OP);
+        for (int i = 0; i < JOBS_PER_OP; i++) {
+            boolean slow = i % longEvery == 0;
+            queue.submit(new Job(slow ? "long" : "short", "", () -> {
+                if (slow)
+                    LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(longMicros));
+                else
+                    Blackhole.consumeCPU(shortTokens);
+                latch.countDown();
+            }));
+        }
+        latch.await();
+    }
+
+    // Tail latency of short jobs that land behind a long one
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void shortBehindLong() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        queue.submit(new Job("long", "", () -> LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(longMicros))));
+        for (int i = 1; i < workerSize; i++)
+            queue.submit(new Job("short", "", () -> Blackhole.consumeCPU(shortTokens)));
+        // Round-robin routes this one to the same worker as the long job
+        queue.submit(new Job("short", "", done::countDown));
+        done.await();
+    }
+
+}
@@ -0,0 +1,85 @@
+package org.ian.soonseo;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Grows the worker pool one worker per interval while the ring buffer fills up or jobs wait too long to start,
+// and shrinks it one at a time once the buffer has stayed nearly empty for the scale-down delay.
+class AutoScaler {
+
+    private static final Logger logger = LogManager.getLogger(AutoScaler.class);
+
+    private final Queue queue;
+    private final AutoScaling scaling;
+    private final long intervalNanos;
+    private final long scaleUpWaitNanos;
+    private final long scaleDownDelayNanos;
+    private volatile boolean running = true;
+    private Thread thread;
+    private long calmSince = System.nanoTime();
+
+    AutoScaler(Queue queue, AutoScaling scaling) {
+        this.queue = queue;
+        this.scaling = scaling;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(scaling.interval());
+        this.scaleUpWaitNanos = TimeUnit.MILLISECONDS.toNanos(scaling.scaleUpQueueWait());
+        this.scaleDownDelayNanos = TimeUnit.MILLISECONDS.toNanos(scaling.scaleDownDelay());
+    }
+
+    void start() {
+        thread = Thread.ofVirtual().name("soonseo-autoscaler").start(this::run);
+    }
+
+    void stop() throws InterruptedException {
+        running = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    private void run() {
+        while (running) {
+            LockSupport.parkNanos(this, intervalNanos);
+            if (!running)
+                return;
+            try {
+                tick(System.nanoTime());
+            } catch (RuntimeException e) {
+                logger.warn("Auto-scaling check failed", e);
+            }
+        }
+    }
+
+    // Returns the change in worker count: 1, -1 or 0
+    int tick(long now) {
+        int workers = queue.getWorkerCount();
+        double utilization = queue.bufferUtilization();
+        long headOfLineWait = queue.headOfLineWait();
+
+        boolean pressured = utilization >= scaling.scaleUpUtilization() || headOfLineWait >= scaleUpWaitNanos;
+        if (workers < scaling.minWorkers() || (pressured && workers < scaling.maxWorkers())) {
+            queue.addWorker();
+            calmSince = now;
+            logger.debug("Added a worker: utilization {}, oldest job waiting {}ns", utilization, headOfLineWait);
+            return 1;
+        }
+
+        if (pressured || utilization > scaling.scaleDownUtilization()) {
+            calmSince = now;
+            return 0;
+        }
+        if (workers > scaling.minWorkers() && now - calmSince >= scaleDownDelayNanos) {
+            queue.removeWorker();
+            calmSince = now;
+            logger.debug("Removed a worker after {}ms below {} utilization", scaling.scaleDownDelay(),
+                    scaling.scaleDownUtilization());
+            return -1;
+        }
+        return 0;
+    }
+
+}
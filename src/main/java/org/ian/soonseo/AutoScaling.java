@@ -0,0 +1,51 @@
+package org.ian.soonseo;
+
+// Bounds and thresholds for growing and shrinking the worker pool at runtime. Every interval the queue adds one
+// worker if the ring buffer is at least scaleUpUtilization full or the oldest unconsumed job has waited
+// scaleUpQueueWait milliseconds, and removes one once utilization has stayed at or below scaleDownUtilization
+// for scaleDownDelay milliseconds. Times are in milliseconds.
+public record AutoScaling(int minWorkers, int maxWorkers, long interval,
+                          double scaleUpUtilization, long scaleUpQueueWait,
+                          double scaleDownUtilization, long scaleDownDelay) {
+
+    private static final AutoScaling NONE = new AutoScaling(0, 0, 0, 0, 0, 0, 0);
+
+    public AutoScaling {
+        if (maxWorkers > 0) {
+            if (minWorkers < 1 || minWorkers > maxWorkers)
+                throw new IllegalArgumentException("Need 1 <= minWorkers <= maxWorkers: " + minWorkers + ", " + maxWorkers);
+            if (interval <= 0)
+                throw new IllegalArgumentException("interval must be positive: " + interval);
+            if (scaleDownUtilization >= scaleUpUtilization)
+                throw new IllegalArgumentException("scaleDownUtilization must be below scaleUpUtilization");
+        }
+    }
+
+    public static AutoScaling none() {
+        return NONE;
+    }
+
+    public static AutoScaling between(int minWorkers, int maxWorkers) {
+        return new AutoScaling(minWorkers, maxWorkers, 100, 0.5, 50, 0.05, 5_000);
+    }
+
+    public AutoScaling withInterval(long interval) {
+        return new AutoScaling(minWorkers, maxWorkers, interval, scaleUpUtilization, scaleUpQueueWait,
+                scaleDownUtilization, scaleDownDelay);
+    }
+
+    public AutoScaling withScaleUp(double utilization, long queueWait) {
+        return new AutoScaling(minWorkers, maxWorkers, interval, utilization, queueWait,
+                scaleDownUtilization, scaleDownDelay);
+    }
+
+    public AutoScaling withScaleDown(double utilization, long delay) {
+        return new AutoScaling(minWorkers, maxWorkers, interval, scaleUpUtilization, scaleUpQueueWait,
+                utilization, delay);
+    }
+
+    public boolean enabled() {
+        return maxWorkers > 0;
+    }
+
+}
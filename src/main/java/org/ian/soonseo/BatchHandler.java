@@ -0,0 +1,12 @@
+package org.ian.soonseo;
+
+import java.util.List;
+
+// Runs a group of consecutive jobs of one function in a single call, e.g. as one bulk write. The jobs' own tasks
+// are not called; throwing fails or retries every job in the group.
+@FunctionalInterface
+public interface BatchHandler {
+
+    void handle(List<Job> jobs) throws Exception;
+
+}
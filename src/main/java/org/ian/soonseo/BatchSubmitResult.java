@@ -0,0 +1,11 @@
+package org.ian.soonseo;
+
+import java.util.List;
+
+public record BatchSubmitResult(int accepted, List<Job> rejected) {
+
+    public boolean isFullyAccepted() {
+        return rejected.isEmpty();
+    }
+
+}
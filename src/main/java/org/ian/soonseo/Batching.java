@@ -0,0 +1,40 @@
+package org.ian.soonseo;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Functions whose jobs are handed to a BatchHandler in groups instead of run one at a time. A consumer collects
+// consecutive jobs of the same function and hands them over once it holds maxSize of them, once maxDelay
+// milliseconds have passed since it took the first, or as soon as the ring buffer has nothing more for it.
+// A maxDelay of 0 leaves only the other two limits.
+public record Batching(int maxSize, long maxDelay, Map<String, BatchHandler> handlers) {
+
+    private static final Batching NONE = new Batching(1, 0, Map.of());
+
+    public Batching {
+        if (maxSize < 1)
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        if (maxDelay < 0)
+            throw new IllegalArgumentException("maxDelay must not be negative: " + maxDelay);
+        handlers = Map.copyOf(handlers);
+    }
+
+    public static Batching none() {
+        return NONE;
+    }
+
+    public static Batching of(int maxSize, long maxDelay) {
+        return new Batching(maxSize, maxDelay, Map.of());
+    }
+
+    public Batching withHandler(String function, BatchHandler handler) {
+        Map<String, BatchHandler> next = new HashMap<>(handlers);
+        next.put(function, handler);
+        return new Batching(maxSize, maxDelay, next);
+    }
+
+    public boolean enabled() {
+        return !handlers.isEmpty();
+    }
+
+}
@@ -0,0 +1,37 @@
+package org.ian.soonseo;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// A producer found its ring buffer full. Producers that retry or block emit one per failed claim, so the
+// event rate tracks how hard the queue is being pushed past its capacity.
+@Name("org.ian.soonseo.BufferSaturated")
+@Label("Buffer Saturated")
+@Category("Soonseo")
+@StackTrace(false)
+final class BufferSaturatedEvent extends Event {
+
+    @Label("Priority")
+    String priority;
+
+    @Label("Buffer Size")
+    int bufferSize;
+
+    @Label("Requested Slots")
+    int requested;
+
+    static void emit(Priority priority, int bufferSize, int requested) {
+        BufferSaturatedEvent event = new BufferSaturatedEvent();
+        if (!event.shouldCommit())
+            return;
+
+        event.priority = priority == null ? null : priority.name();
+        event.bufferSize = bufferSize;
+        event.requested = requested;
+        event.commit();
+    }
+
+}
@@ -0,0 +1,41 @@
+package org.ian.soonseo;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+
+// Static membership of a group of queues that share load over TCP. Every node is given the same member list and
+// its own index in it. Keyed jobs go to the member their key hashes to; an unkeyed job stays local until the local
+// ring buffers are at least forwardAbove full, then goes to the peer that last reported the most free slots.
+// Peers report their free slots every heartbeatInterval milliseconds. Forwarded jobs are rebuilt on the receiving
+// node through the registry, so every function submitted through the cluster must be registered on every member.
+public record Cluster(List<InetSocketAddress> members, int self, FunctionRegistry registry,
+                      double forwardAbove, long heartbeatInterval) {
+
+    public static final double DEFAULT_FORWARD_ABOVE = 0.75;
+    public static final long DEFAULT_HEARTBEAT_INTERVAL = 10;
+
+    public Cluster {
+        members = List.copyOf(members);
+        if (self < 0 || self >= members.size())
+            throw new IllegalArgumentException("self " + self + " is not an index into " + members.size() + " members");
+        if (registry == null)
+            throw new IllegalArgumentException("A cluster requires a function registry to rebuild forwarded jobs");
+        if (forwardAbove <= 0 || forwardAbove > 1)
+            throw new IllegalArgumentException("forwardAbove must be in (0, 1]: " + forwardAbove);
+        if (heartbeatInterval <= 0)
+            throw new IllegalArgumentException("heartbeatInterval must be positive: " + heartbeatInterval);
+    }
+
+    public static Cluster of(List<InetSocketAddress> members, int self, FunctionRegistry registry) {
+        return new Cluster(members, self, registry, DEFAULT_FORWARD_ABOVE, DEFAULT_HEARTBEAT_INTERVAL);
+    }
+
+    public Cluster withForwardAbove(double forwardAbove) {
+        return new Cluster(members, self, registry, forwardAbove, heartbeatInterval);
+    }
+
+    public Cluster withHeartbeatInterval(long heartbeatInterval) {
+        return new Cluster(members, self, registry, forwardAbove, heartbeatInterval);
+    }
+
+}
@@ -0,0 +1,81 @@
+package org.ian.soonseo;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Wire format between cluster members. A frame is an int body length followed by the body, whose first byte is its
+// type:
+//  - JOB: priority ordinal, then function, args and partition key
+//  - CAPACITY: the sender's member index, its free ring buffer slots and its total slots
+// Strings are an int byte count (-1 for null) followed by UTF-8 bytes.
+final class ClusterFrames {
+
+    static final byte JOB = 1;
+    static final byte CAPACITY = 2;
+
+    static final int LENGTH_SIZE = Integer.BYTES;
+    static final int CAPACITY_SIZE = LENGTH_SIZE + 1 + Integer.BYTES + Long.BYTES * 2;
+    // Bounds what a peer can make a reader buffer
+    static final int MAX_BODY = 1 << 20;
+
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private ClusterFrames() {
+    }
+
+    static byte[] encode(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static int jobSize(byte[] function, byte[] args, byte[] partitionKey) {
+        return LENGTH_SIZE + 2 + stringSize(function) + stringSize(args) + stringSize(partitionKey);
+    }
+
+    static void putJob(ByteBuffer out, Priority priority, byte[] function, byte[] args, byte[] partitionKey) {
+        out.putInt(jobSize(function, args, partitionKey) - LENGTH_SIZE);
+        out.put(JOB);
+        out.put((byte) priority.ordinal());
+        putString(out, function);
+        putString(out, args);
+        putString(out, partitionKey);
+    }
+
+    static void putCapacity(ByteBuffer out, int member, long freeSlots, long totalSlots) {
+        out.putInt(CAPACITY_SIZE - LENGTH_SIZE);
+        out.put(CAPACITY);
+        out.putInt(member);
+        out.putLong(freeSlots);
+        out.putLong(totalSlots);
+    }
+
+    static Priority getPriority(ByteBuffer in) {
+        return PRIORITIES[in.get()];
+    }
+
+    // Only for heap buffers, which is what a reader receives into
+    static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0)
+            return null;
+        if (length > in.remaining())
+            throw new IllegalArgumentException("String of " + length + " bytes overruns its frame");
+
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static int stringSize(byte[] bytes) {
+        return Integer.BYTES + (bytes == null ? 0 : bytes.length);
+    }
+
+    private static void putString(ByteBuffer out, byte[] bytes) {
+        if (bytes == null) {
+            out.putInt(-1);
+            return;
+        }
+        out.putInt(bytes.length);
+        out.put(bytes);
+    }
+
+}
@@ -0,0 +1,321 @@
+package org.ian.soonseo;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Outbound half of the connection to one peer, plus what that peer last reported about its capacity. Producers
+// encode jobs into the connection's buffer under the link's lock and never touch the socket: each connection has a
+// writer on its own virtual thread that swaps the buffer out once it holds FLUSH_AT bytes, or when the node's ticker
+// asks every millisecond, and writes it outside the lock. The buffer is the whole backlog, so a peer that stops
+// reading fills it and the link then turns jobs away to run locally, without blocking the producer or the ticker.
+// A write that makes no progress for stallAfterNanos is treated as a broken connection.
+// Jobs stay referenced until their frames are written, and go back to the node if the connection breaks first.
+final class ClusterLink {
+
+    private static final Logger logger = LogManager.getLogger(ClusterLink.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int FLUSH_AT = 16 * 1024;
+    private static final int CONNECT_TIMEOUT_MILLIS = 1_000;
+    private static final int CLOSE_TIMEOUT_MILLIS = 1_000;
+
+    final int member;
+    private final InetSocketAddress address;
+    private final long stallAfterNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pending = lock.newCondition();
+    private final Consumer<Job> reclaim;
+    private final AtomicBoolean connecting = new AtomicBoolean();
+    private final AtomicLong bytesSent = new AtomicLong();
+    // Guarded by lock
+    private Connection connection;
+    private volatile boolean connected;
+
+    // Drawn down as unkeyed jobs are forwarded, so a burst between two reports does not all land on one peer
+    private final AtomicLong freeSlots = new AtomicLong();
+    private volatile long totalSlots;
+    private volatile long reportedAt;
+
+    ClusterLink(int member, InetSocketAddress address, long stallAfterNanos, Consumer<Job> reclaim) {
+        this.member = member;
+        this.address = address;
+        this.stallAfterNanos = stallAfterNanos;
+        this.reclaim = reclaim;
+    }
+
+    boolean isConnected() {
+        return connected;
+    }
+
+    long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    // Opens the connection off the caller's thread; a peer that is not up yet is simply tried again later
+    void connect() {
+        if (connected || !connecting.compareAndSet(false, true))
+            return;
+
+        Thread.ofVirtual().name("soonseo-cluster-connect").start(() -> {
+            try {
+                SocketChannel opened = SocketChannel.open();
+                try {
+                    opened.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    opened.socket().connect(address, CONNECT_TIMEOUT_MILLIS);
+                } catch (IOException e) {
+                    opened.close();
+                    throw e;
+                }
+                Connection opening = new Connection(opened);
+                lock.lock();
+                try {
+                    connection = opening;
+                    connected = true;
+                    opening.writer = Thread.ofVirtual().name("soonseo-cluster-write-" + member)
+                            .start(() -> write(opening));
+                } finally {
+                    lock.unlock();
+                }
+                logger.info("Connected to cluster member {} at {}", member, address);
+            } catch (IOException e) {
+                logger.debug("Cluster member {} at {} is not reachable yet", member, address, e);
+            } finally {
+                connecting.set(false);
+            }
+        });
+    }
+
+    // False if the job never made it into the link, in which case the caller keeps it: the peer is down, or it is
+    // not keeping up and the backlog is full, or the job does not fit in the buffer at all. A job still buffered
+    // when the connection breaks is reclaimed; if part of its buffer had been written, it may run on the peer as well.
+    boolean send(Job job) {
+        if (!connected)
+            return false;
+
+        byte[] function = ClusterFrames.encode(job.getFunction());
+        byte[] args = ClusterFrames.encode(job.getArgs());
+        byte[] partitionKey = ClusterFrames.encode(job.getPartitionKey());
+        int size = ClusterFrames.jobSize(function, args, partitionKey);
+        if (size - ClusterFrames.LENGTH_SIZE > ClusterFrames.MAX_BODY)
+            throw new IllegalArgumentException("Job " + job.getKey() + " is too large to forward: " + size + " bytes");
+
+        lock.lock();
+        try {
+            Connection current = connection;
+            if (current == null || current.closing || current.buffer.remaining() < size)
+                return false;
+
+            ClusterFrames.putJob(current.buffer, job.getPriority(), function, args, partitionKey);
+            current.buffered.add(job);
+            if (current.buffer.position() >= FLUSH_AT)
+                pending.signalAll();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Skipped while the backlog is full; the next heartbeat sends a fresh report anyway
+    void sendCapacity(int self, long free, long total) {
+        lock.lock();
+        try {
+            Connection current = connection;
+            if (current != null && !current.closing && current.buffer.remaining() >= ClusterFrames.CAPACITY_SIZE)
+                ClusterFrames.putCapacity(current.buffer, self, free, total);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Never blocks on the socket: wakes the writer, or breaks the connection if its write has stalled
+    void flush() {
+        lock.lock();
+        try {
+            Connection current = connection;
+            if (current == null)
+                return;
+            long started = current.writeStartedAt;
+            if (started != 0 && System.nanoTime() - started > stallAfterNanos)
+                disconnect(new IOException("Write stalled for over "
+                        + TimeUnit.NANOSECONDS.toMillis(stallAfterNanos) + "ms"));
+            else if (current.buffer.position() > 0)
+                pending.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Gives the writer a moment to send what is buffered; whatever it could not send is reclaimed
+    void close() {
+        Connection closing;
+        lock.lock();
+        try {
+            closing = connection;
+            if (closing == null)
+                return;
+            closing.closing = true;
+            pending.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            closing.writer.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        lock.lock();
+        try {
+            if (connection == closing) {
+                connection = null;
+                connected = false;
+                closeQuietly(closing.channel);
+                pending.signalAll();
+                reclaimAll(closing);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void report(long free, long total) {
+        freeSlots.set(free);
+        totalSlots = total;
+        reportedAt = System.nanoTime();
+    }
+
+    // Slots the peer can still take before it is itself past forwardAbove, or 0 if it is down or has gone quiet
+    long spareSlots(long now, long staleAfterNanos, double forwardAbove) {
+        if (!isReporting(now, staleAfterNanos))
+            return 0;
+        long reserved = (long) Math.ceil(totalSlots * (1 - forwardAbove));
+        return Math.max(freeSlots.get() - reserved, 0);
+    }
+
+    boolean isReporting(long now, long staleAfterNanos) {
+        return connected && reportedAt != 0 && now - reportedAt <= staleAfterNanos;
+    }
+
+    void took() {
+        freeSlots.decrementAndGet();
+    }
+
+    // Runs on the connection's own thread until the connection breaks, or closes with nothing left to send
+    private void write(Connection writing) {
+        while (true) {
+            lock.lock();
+            try {
+                while (connection == writing && !writing.closing && writing.buffer.position() == 0)
+                    pending.awaitUninterruptibly();
+                if (connection != writing || writing.buffer.position() == 0)
+                    return;
+                writing.swap();
+                writing.writeStartedAt = System.nanoTime();
+            } finally {
+                lock.unlock();
+            }
+
+            IOException failure = null;
+            long written = 0;
+            ByteBuffer frames = writing.outbound;
+            frames.flip();
+            try {
+                while (frames.hasRemaining())
+                    written += writing.channel.write(frames);
+            } catch (IOException e) {
+                failure = e;
+            }
+            frames.clear();
+            bytesSent.addAndGet(written);
+
+            lock.lock();
+            try {
+                writing.writeStartedAt = 0;
+                // Already disconnected, with its jobs reclaimed
+                if (connection != writing)
+                    return;
+                if (failure != null) {
+                    disconnect(failure);
+                    return;
+                }
+                writing.sending.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Called with the lock held; the jobs not yet written to the peer are handed back in the order they were sent.
+    // Closing the channel also wakes a writer blocked on it.
+    private void disconnect(IOException cause) {
+        logger.warn("Lost connection to cluster member {} at {}", member, address, cause);
+        Connection broken = connection;
+        connection = null;
+        connected = false;
+        freeSlots.set(0);
+        closeQuietly(broken.channel);
+        pending.signalAll();
+        reclaimAll(broken);
+    }
+
+    private void reclaimAll(Connection broken) {
+        for (Job job : broken.sending)
+            reclaim.accept(job);
+        for (Job job : broken.buffered)
+            reclaim.accept(job);
+        broken.sending.clear();
+        broken.buffered.clear();
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close cluster connection", e);
+        }
+    }
+
+    // Two buffers per connection: producers append to buffer while the writer sends outbound
+    private static final class Connection {
+
+        final SocketChannel channel;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        ByteBuffer outbound = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        // The jobs framed in buffer and in outbound, in order
+        List<Job> buffered = new ArrayList<>();
+        List<Job> sending = new ArrayList<>();
+        boolean closing;
+        volatile long writeStartedAt;
+        Thread writer;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        // Called with the lock held, once the writer is done with outbound
+        void swap() {
+            ByteBuffer frames = outbound;
+            outbound = buffer;
+            buffer = frames;
+            List<Job> jobs = sending;
+            sending = buffered;
+            buffered = jobs;
+        }
+    }
+
+}
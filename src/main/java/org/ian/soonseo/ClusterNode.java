@@ -0,0 +1,349 @@
+package org.ian.soonseo;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.ian.soonseo.metrics.CapturedClusterMetrics;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Joins a queue to a Cluster. Jobs submitted through the node go to the member that owns their partition key, and
+// unkeyed jobs overflow to the peer with the most spare ring buffer slots once the local ones pass forwardAbove.
+// Jobs arriving from peers are rebuilt through the registry and submitted to the local queue, and never move again.
+// Forwarding is fire-and-forget: a forwarded job's handle, retries and metrics live on the member that runs it.
+// Jobs from peers are submitted asynchronously, so a full queue drops them rather than stalling every connection.
+// Jobs still buffered for a peer whose connection breaks are reclaimed and run here instead, as are jobs for a peer
+// whose backlog is full because it stopped reading.
+//
+// Each node runs two threads: a selector thread that only reads, so inbound connections always drain even while
+// the node's own writes are stalled on a slow peer, and a ticker that wakes the links' writers, sends capacity
+// reports and reconnects to peers that are down. Each connected link writes on its own virtual thread, so neither
+// producers nor the ticker ever wait on a peer's socket.
+public final class ClusterNode implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(ClusterNode.class);
+
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    // A peer that has not reported for this many heartbeats gets no unkeyed jobs
+    private static final int STALE_HEARTBEATS = 3;
+
+    private final Queue queue;
+    private final Cluster cluster;
+    private final int self;
+    // Indexed by member; null at self
+    private final ClusterLink[] links;
+    private final long staleAfterNanos;
+    private final LongAdder forwarded = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder reclaimed = new LongAdder();
+    private volatile long bytesReceived;
+    private volatile boolean running;
+    private Selector selector;
+    private ServerSocketChannel server;
+    private Thread reader;
+    private Thread ticker;
+
+    public ClusterNode(Queue queue, Cluster cluster) {
+        if (!queue.isMultiProducer())
+            throw new UnsupportedOperationException("ClusterNode requires ProducerType.MULTI");
+        this.queue = queue;
+        this.cluster = cluster;
+        this.self = cluster.self();
+        List<InetSocketAddress> members = cluster.members();
+        this.staleAfterNanos = TimeUnit.MILLISECONDS.toNanos(cluster.heartbeatInterval() * STALE_HEARTBEATS);
+        this.links = new ClusterLink[members.size()];
+        for (int i = 0; i < links.length; i++) {
+            if (i != self)
+                links[i] = new ClusterLink(i, members.get(i), staleAfterNanos, this::reclaim);
+        }
+    }
+
+    // Listens on this member's address; peers that are not up yet are connected to as they appear
+    public synchronized ClusterNode start() throws IOException {
+        if (reader != null)
+            return this;
+
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        try {
+            server.bind(cluster.members().get(self));
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            server.close();
+            selector.close();
+            throw e;
+        }
+
+        running = true;
+        reader = Thread.ofPlatform().daemon().name("soonseo-cluster-io-" + self).start(this::serve);
+        ticker = Thread.ofPlatform().daemon().name("soonseo-cluster-" + self).start(this::tick);
+        return this;
+    }
+
+    public int getMember() {
+        return self;
+    }
+
+    // The same on every member, as long as they share the member list
+    public int ownerOf(String partitionKey) {
+        return (int) Math.floorMod(WorkerRouting.mix(partitionKey.hashCode()), (long) links.length);
+    }
+
+    // Returns the job's handle if it runs on this member, or null if it went to a peer. A job whose peer cannot be
+    // reached or is not keeping up runs here, so a key's jobs can run on two members while its owner is down or slow.
+    public JobHandle<?> submit(Job job) throws RejectedExecutionException {
+        int target = route(job);
+        if (target != self && links[target].send(job)) {
+            forwarded.increment();
+            return null;
+        }
+        return queue.submit(job);
+    }
+
+    public CapturedClusterMetrics captureMetrics() {
+        long now = System.nanoTime();
+        int livePeers = 0;
+        long bytesSent = 0;
+        for (ClusterLink link : links) {
+            if (link == null)
+                continue;
+            if (link.isReporting(now, staleAfterNanos))
+                livePeers++;
+            bytesSent += link.getBytesSent();
+        }
+        return new CapturedClusterMetrics(self, livePeers, forwarded.sum(), received.sum(), dropped.sum(),
+                reclaimed.sum(), bytesSent, bytesReceived);
+    }
+
+    private int route(Job job) {
+        String partitionKey = job.getPartitionKey();
+        if (partitionKey != null)
+            return ownerOf(partitionKey);
+        if (queue.bufferUtilization() < cluster.forwardAbove())
+            return self;
+
+        long now = System.nanoTime();
+        ClusterLink best = null;
+        long most = 0;
+        for (ClusterLink link : links) {
+            if (link == null)
+                continue;
+            long spare = link.spareSlots(now, staleAfterNanos, cluster.forwardAbove());
+            if (spare > most) {
+                most = spare;
+                best = link;
+            }
+        }
+        if (best == null)
+            return self;
+        best.took();
+        return best.member;
+    }
+
+    private void serve() {
+        while (running) {
+            try {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid())
+                        continue;
+                    if (key.isAcceptable())
+                        accept();
+                    else if (key.isReadable())
+                        read(key);
+                }
+            } catch (ClosedSelectorException e) {
+                return;
+            } catch (IOException e) {
+                logger.warn("Cluster member {} failed to accept a connection", self, e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null)
+            return;
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ, ByteBuffer.allocate(READ_BUFFER_SIZE));
+    }
+
+    // Handles every complete frame received so far and keeps the tail of a partial one for the next read
+    private void read(SelectionKey key) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        ByteBuffer buffer = (ByteBuffer) key.attachment();
+        try {
+            int read = channel.read(buffer);
+            if (read < 0) {
+                close(key);
+                return;
+            }
+            bytesReceived += read;
+
+            buffer.flip();
+            while (buffer.remaining() >= ClusterFrames.LENGTH_SIZE) {
+                int length = buffer.getInt(buffer.position());
+                if (length <= 0 || length > ClusterFrames.MAX_BODY)
+                    throw new IOException("Bad frame length " + length);
+                if (buffer.remaining() < ClusterFrames.LENGTH_SIZE + length)
+                    break;
+
+                int body = buffer.position() + ClusterFrames.LENGTH_SIZE;
+                receive(buffer.slice(body, length));
+                buffer.position(body + length);
+            }
+            buffer.compact();
+
+            if (!buffer.hasRemaining()) {
+                ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                larger.put(buffer);
+                key.attach(larger);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Cluster member {} dropped a connection", self, e);
+            close(key);
+        }
+    }
+
+    private void receive(ByteBuffer frame) throws IOException {
+        byte type = frame.get();
+        switch (type) {
+            case ClusterFrames.JOB -> receiveJob(frame);
+            case ClusterFrames.CAPACITY -> {
+                int member = frame.getInt();
+                long free = frame.getLong();
+                long total = frame.getLong();
+                if (member >= 0 && member < links.length && links[member] != null)
+                    links[member].report(free, total);
+            }
+            default -> throw new IOException("Unknown frame type " + type);
+        }
+    }
+
+    private void receiveJob(ByteBuffer frame) {
+        Priority priority = ClusterFrames.getPriority(frame);
+        String function = ClusterFrames.getString(frame);
+        String args = ClusterFrames.getString(frame);
+        String partitionKey = ClusterFrames.getString(frame);
+        received.increment();
+
+        Callable<?> task = cluster.registry().create(function, args);
+        if (task == null) {
+            dropped.increment();
+            logger.warn("No handler registered for {}, dropping a job forwarded to member {}", function, self);
+            return;
+        }
+
+        Job job = new Job(function, args, task);
+        job.setPriority(priority);
+        job.setPartitionKey(partitionKey);
+        submitLocally(job);
+    }
+
+    // Called by a link, under its lock, for a job it could not write out before its connection broke
+    private void reclaim(Job job) {
+        reclaimed.increment();
+        submitLocally(job);
+    }
+
+    private void submitLocally(Job job) {
+        queue.submitAsync(job).whenComplete((ignored, error) -> {
+            if (error != null) {
+                dropped.increment();
+                logger.warn("Member {} rejected forwarded job {}", self, job.getKey(), error);
+            }
+        });
+    }
+
+    private void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            logger.debug("Failed to close cluster connection", e);
+        }
+    }
+
+    private void tick() {
+        long heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(cluster.heartbeatInterval());
+        long nextHeartbeat = System.nanoTime();
+        while (running) {
+            long now = System.nanoTime();
+            if (now - nextHeartbeat >= 0) {
+                heartbeat();
+                nextHeartbeat = now + heartbeatNanos;
+            }
+            for (ClusterLink link : links) {
+                if (link != null)
+                    link.flush();
+            }
+            LockSupport.parkNanos(this, FLUSH_INTERVAL_NANOS);
+        }
+    }
+
+    private void heartbeat() {
+        long free = queue.remainingCapacity();
+        long total = queue.bufferSize();
+        for (ClusterLink link : links) {
+            if (link == null)
+                continue;
+            if (link.isConnected())
+                link.sendCapacity(self, free, total);
+            else
+                link.connect();
+        }
+    }
+
+    // Flushes what is buffered for peers and stops listening; the queue itself keeps running
+    @Override
+    public synchronized void close() {
+        if (reader == null)
+            return;
+
+        running = false;
+        LockSupport.unpark(ticker);
+        selector.wakeup();
+        try {
+            ticker.join();
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (ClusterLink link : links) {
+            if (link != null)
+                link.close();
+        }
+        try {
+            for (SelectionKey key : selector.keys())
+                key.channel().close();
+            selector.close();
+            server.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close cluster member {}", self, e);
+        }
+        reader = null;
+        ticker = null;
+    }
+
+}
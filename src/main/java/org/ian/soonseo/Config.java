@@ -1,4 +1,153 @@
 package org.ian.soonseo;
 
-public record Config(int bufferSize, int workerSize, int maxRetries, long backoffTime) {
+import com.lmax.disruptor.dsl.ProducerType;
+
+import java.util.function.Consumer;
+
+public record Config(int bufferSize, int workerSize, int maxRetries, long backoffTime,
+                     DispatchMode dispatchMode, ExecutionMode executionMode, int maxInFlight,
+                     WaitStrategyType waitStrategy, ProducerType producerType, Overflow overflow,
+                     PriorityLanes priorityLanes, Durability durability, AutoScaling autoScaling,
+                     Deduplication deduplication, Batching batching, Throttling throttling) {
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 10_000;
+
+    public Config {
+        if (maxInFlight <= 0)
+            throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        // Overflowed jobs are published from consumer threads, which a single-producer sequencer cannot allow
+        if (producerType == ProducerType.SINGLE
+                && (overflow.policy() == OverflowPolicy.DROP_OLDEST || overflow.policy() == OverflowPolicy.SPILL))
+            throw new IllegalArgumentException(overflow.policy() + " overflow requires ProducerType.MULTI");
+        // Each job already gets its own virtual thread, so there is no queue behind a busy worker to steal from
+        if (dispatchMode == DispatchMode.WORK_STEALING && executionMode == ExecutionMode.VIRTUAL_THREAD)
+            throw new IllegalArgumentException("WORK_STEALING dispatch requires ExecutionMode.INLINE");
+        // Stolen jobs leave their deque one at a time, so no worker sees a run of consecutive jobs to group
+        if (dispatchMode == DispatchMode.WORK_STEALING && batching.enabled())
+            throw new IllegalArgumentException("Batch handlers require DispatchMode.PARALLEL or SERIAL");
+        // Throttled jobs are re-injected from the timer thread
+        if (throttling.enabled() && producerType == ProducerType.SINGLE)
+            throw new IllegalArgumentException("Throttling requires ProducerType.MULTI");
+        if (autoScaling.enabled()) {
+            // Parallel lane consumers each own a fixed share of every lane, so they cannot take in a new worker
+            if (priorityLanes.enabled() && dispatchMode == DispatchMode.PARALLEL)
+                throw new IllegalArgumentException("Auto-scaling with priority lanes requires DispatchMode.SERIAL");
+            // Parallel consumers hand off at the last claimed sequence, which a single-producer sequencer does not expose
+            if (producerType == ProducerType.SINGLE && dispatchMode == DispatchMode.PARALLEL)
+                throw new IllegalArgumentException("Auto-scaling a PARALLEL queue requires ProducerType.MULTI");
+            if (workerSize < autoScaling.minWorkers() || workerSize > autoScaling.maxWorkers())
+                throw new IllegalArgumentException("workerSize " + workerSize + " is outside the auto-scaling bounds");
+        }
+    }
+
+    public Config(int bufferSize, int workerSize, int maxRetries, long backoffTime) {
+        this(bufferSize, workerSize, maxRetries, backoffTime,
+                DispatchMode.PARALLEL, ExecutionMode.INLINE, DEFAULT_MAX_IN_FLIGHT,
+                WaitStrategyType.YIELDING, ProducerType.MULTI, Overflow.retrying(maxRetries, backoffTime),
+                PriorityLanes.none(), Durability.none(), AutoScaling.none(),
+                Deduplication.NONE, Batching.none(), Throttling.none());
+    }
+
+    public Config withDispatchMode(DispatchMode dispatchMode) {
+        return with(copy -> copy.dispatchMode = dispatchMode);
+    }
+
+    public Config withExecutionMode(ExecutionMode executionMode) {
+        return with(copy -> copy.executionMode = executionMode);
+    }
+
+    public Config withMaxInFlight(int maxInFlight) {
+        return with(copy -> copy.maxInFlight = maxInFlight);
+    }
+
+    public Config withWaitStrategy(WaitStrategyType waitStrategy) {
+        return with(copy -> copy.waitStrategy = waitStrategy);
+    }
+
+    // Only declare SINGLE when exactly one thread ever calls submit; concurrent submitters would corrupt the sequencer.
+    public Config withProducerType(ProducerType producerType) {
+        return with(copy -> copy.producerType = producerType);
+    }
+
+    public Config withOverflow(Overflow overflow) {
+        return with(copy -> copy.overflow = overflow);
+    }
+
+    public Config withPriorityLanes(PriorityLanes priorityLanes) {
+        return with(copy -> copy.priorityLanes = priorityLanes);
+    }
+
+    public Config withDurability(Durability durability) {
+        return with(copy -> copy.durability = durability);
+    }
+
+    public Config withAutoScaling(AutoScaling autoScaling) {
+        return with(copy -> copy.autoScaling = autoScaling);
+    }
+
+    public Config withDeduplication(Deduplication deduplication) {
+        return with(copy -> copy.deduplication = deduplication);
+    }
+
+    public Config withBatching(Batching batching) {
+        return with(copy -> copy.batching = batching);
+    }
+
+    public Config withThrottling(Throttling throttling) {
+        return with(copy -> copy.throttling = throttling);
+    }
+
+    // Every wither goes through a Copy, so a new component is added there and nowhere else
+    private Config with(Consumer<Copy> change) {
+        Copy copy = new Copy(this);
+        change.accept(copy);
+        return copy.build();
+    }
+
+    private static final class Copy {
+        int bufferSize;
+        int workerSize;
+        int maxRetries;
+        long backoffTime;
+        DispatchMode dispatchMode;
+        ExecutionMode executionMode;
+        int maxInFlight;
+        WaitStrategyType waitStrategy;
+        ProducerType producerType;
+        Overflow overflow;
+        PriorityLanes priorityLanes;
+        Durability durability;
+        AutoScaling autoScaling;
+        Deduplication deduplication;
+        Batching batching;
+        Throttling throttling;
+
+        Copy(Config config) {
+            bufferSize = config.bufferSize;
+            workerSize = config.workerSize;
+            maxRetries = config.maxRetries;
+            backoffTime = config.backoffTime;
+            dispatchMode = config.dispatchMode;
+            executionMode = config.executionMode;
+            maxInFlight = config.maxInFlight;
+            waitStrategy = config.waitStrategy;
+            producerType = config.producerType;
+            overflow = config.overflow;
+            priorityLanes = config.priorityLanes;
+            durability = config.durability;
+            autoScaling = config.autoScaling;
+            deduplication = config.deduplication;
+            batching = config.batching;
+            throttling = config.throttling;
+        }
+
+        Config build() {
+            return new Config(bufferSize, workerSize, maxRetries, backoffTime,
+                    dispatchMode, executionMode, maxInFlight,
+                    waitStrategy, producerType, overflow,
+                    priorityLanes, durability, autoScaling,
+                    deduplication, batching, throttling);
+        }
+    }
+
 }
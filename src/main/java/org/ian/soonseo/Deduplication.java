@@ -0,0 +1,11 @@
+package org.ian.soonseo;
+
+// How Queue.submit recognises a resubmission of a job that is still queued or running. A duplicate is never
+// queued itself; it ends with the same result or failure as the job it was collapsed into.
+public enum Deduplication {
+    NONE,
+    // Only jobs with an idempotency key are collapsed
+    IDEMPOTENCY_KEY,
+    // The idempotency key if there is one, otherwise function and args together
+    FUNCTION_AND_ARGS
+}
@@ -0,0 +1,8 @@
+package org.ian.soonseo;
+
+public enum DispatchMode {
+    SERIAL,
+    PARALLEL,
+    // One consumer feeds per-worker deques; idle workers steal from busy ones
+    WORK_STEALING
+}
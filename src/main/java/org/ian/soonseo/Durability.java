@@ -0,0 +1,48 @@
+package org.ian.soonseo;
+
+import java.nio.file.Path;
+
+// Optional write-ahead journal for submitted jobs. When enabled, every job is appended to a segmented,
+// memory-mapped journal under directory before it is published, and jobs that never finished are
+// resubmitted through the registry the next time a queue is opened on the same directory.
+// With awaitSync, submit only returns once the job's record has been forced to disk; concurrent submitters
+// share each force. Without it the journal is forced every syncInterval milliseconds.
+public record Durability(Path directory, int segmentSize, boolean awaitSync, long syncInterval, FunctionRegistry registry) {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final long DEFAULT_SYNC_INTERVAL = 10;
+
+    private static final Durability NONE = new Durability(null, 0, false, 0, null);
+
+    public Durability {
+        if (directory != null && registry == null)
+            throw new IllegalArgumentException("A journal requires a function registry to replay jobs");
+        if (directory != null && syncInterval <= 0)
+            throw new IllegalArgumentException("syncInterval must be positive: " + syncInterval);
+    }
+
+    public static Durability none() {
+        return NONE;
+    }
+
+    public static Durability journal(Path directory, FunctionRegistry registry) {
+        return new Durability(directory, DEFAULT_SEGMENT_SIZE, true, DEFAULT_SYNC_INTERVAL, registry);
+    }
+
+    public Durability withSegmentSize(int segmentSize) {
+        return new Durability(directory, segmentSize, awaitSync, syncInterval, registry);
+    }
+
+    public Durability withAwaitSync(boolean awaitSync) {
+        return new Durability(directory, segmentSize, awaitSync, syncInterval, registry);
+    }
+
+    public Durability withSyncInterval(long syncInterval) {
+        return new Durability(directory, segmentSize, awaitSync, syncInterval, registry);
+    }
+
+    public boolean enabled() {
+        return directory != null;
+    }
+
+}
@@ -0,0 +1,6 @@
+package org.ian.soonseo;
+
+public enum ExecutionMode {
+    INLINE,
+    VIRTUAL_THREAD
+}
@@ -0,0 +1,76 @@
+package org.ian.soonseo;
+
+import org.ian.soonseo.metrics.CapturedFunctionMetrics;
+import org.ian.soonseo.metrics.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Latency histograms per function name, shared by all workers of a queue. Only the first job of a
+// function allocates; after that recording is a map lookup plus two histogram increments. Function names are
+// caller data, so past maxFunctions new names all share the OTHER histograms instead of growing the map.
+class FunctionMetrics {
+
+    static final int DEFAULT_MAX_FUNCTIONS = 1024;
+    static final String OTHER = "_other";
+
+    private final Map<String, Histograms> byFunction = new ConcurrentHashMap<>();
+    private final Histograms other = new Histograms();
+    private final AtomicInteger tracked = new AtomicInteger();
+    private final int maxFunctions;
+
+    FunctionMetrics() {
+        this(DEFAULT_MAX_FUNCTIONS);
+    }
+
+    FunctionMetrics(int maxFunctions) {
+        this.maxFunctions = maxFunctions;
+    }
+
+    void record(String function, long queueWait, long execution) {
+        Histograms histograms = byFunction.get(function);
+        if (histograms == null)
+            histograms = admit(function);
+        histograms.queueWait.record(queueWait);
+        histograms.execution.record(execution);
+    }
+
+    private Histograms admit(String function) {
+        if (tracked.get() >= maxFunctions)
+            return other;
+        Histograms histograms = byFunction.computeIfAbsent(function, f -> {
+            if (tracked.incrementAndGet() <= maxFunctions)
+                return new Histograms();
+            tracked.decrementAndGet();
+            return null;
+        });
+        return histograms == null ? other : histograms;
+    }
+
+    List<CapturedFunctionMetrics> capture() {
+        List<CapturedFunctionMetrics> metrics = new ArrayList<>(byFunction.size() + 1);
+        byFunction.forEach((function, histograms) -> metrics.add(histograms.capture(function)));
+        if (tracked.get() >= maxFunctions)
+            metrics.add(other.capture(OTHER));
+        return metrics;
+    }
+
+    CapturedFunctionMetrics capture(String function) {
+        Histograms histograms = OTHER.equals(function) ? other : byFunction.get(function);
+        return histograms == null ? null : histograms.capture(function);
+    }
+
+    private static final class Histograms {
+
+        final LatencyHistogram queueWait = new LatencyHistogram();
+        final LatencyHistogram execution = new LatencyHistogram();
+
+        CapturedFunctionMetrics capture(String function) {
+            return new CapturedFunctionMetrics(function, queueWait.capture(), execution.capture());
+        }
+    }
+
+}
@@ -0,0 +1,27 @@
+package org.ian.soonseo;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+// Rebuilds the task of a journaled job from its function name and args when the queue restarts.
+public final class FunctionRegistry {
+
+    private final Map<String, Function<String, ? extends Callable<?>>> handlers = new ConcurrentHashMap<>();
+
+    public FunctionRegistry register(String function, Function<String, ? extends Callable<?>> handler) {
+        handlers.put(function, handler);
+        return this;
+    }
+
+    public boolean contains(String function) {
+        return handlers.containsKey(function);
+    }
+
+    Callable<?> create(String function, String args) {
+        Function<String, ? extends Callable<?>> handler = handlers.get(function);
+        return handler == null ? null : handler.apply(args);
+    }
+
+}
@@ -1,21 +1,63 @@
 package org.ian.soonseo;
 
-import static org.ian.soonseo.utils.IdGenerator.genId;
+import org.ian.soonseo.exception.JobProcessingException;
+import org.ian.soonseo.utils.IdGenerator;
+import org.ian.soonseo.utils.JobId;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 public class Job {
 
-    private final String key;
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Job, CompletableFuture> COMPLETION =
+            AtomicReferenceFieldUpdater.newUpdater(Job.class, CompletableFuture.class, "completion");
+    private static final AtomicReferenceFieldUpdater<Job, JobStatus> STATUS =
+            AtomicReferenceFieldUpdater.newUpdater(Job.class, JobStatus.class, "status");
+
+    private final JobId id;
     private final String function;
     private final String args;
-    private final Runnable task;
+    private final Callable<?> task;
 
-    private final long queuedTime;
+    private long queuedTime;
     private long startedTime;
     private long completedTime;
-    private JobStatus status;
+    private volatile JobStatus status;
+    private Priority priority = Priority.NORMAL;
+    private String partitionKey;
+    private String idempotencyKey;
+    private RetryPolicy retryPolicy = RetryPolicy.none();
+    private int attempts;
+    // Set once the submission is in the journal so retried publishes do not append it again
+    boolean journaled;
+    // The queue that handed this job back on drainAndShutdown; that queue must never run it
+    private volatile Queue withdrawnBy;
+    // Set while this job holds its entry in a queue's JobIndex
+    Object indexKey;
+    // Throttle state: parked off the ring buffer, past its function's rate, or holding an in-flight slot
+    boolean throttled;
+    boolean rateCleared;
+    Throttle.Limiter heldSlot;
+
+    private volatile Object result;
+    private volatile Throwable failure;
+    // Only created once somebody asks for a handle, so fire-and-forget jobs pay nothing for it
+    private volatile CompletableFuture<Object> completion;
 
     public Job(String function, String args, Runnable task) {
-        this.key = genId();
+        this(function, args, Executors.callable(task));
+    }
+
+    public Job(String function, String args, Callable<?> task) {
+        this(IdGenerator.nextId(), function, args, task);
+    }
+
+    // Recovered jobs keep their original id so the journal can close them out
+    Job(JobId id, String function, String args, Callable<?> task) {
+        this.id = id;
         this.function = function;
         this.args = args;
         this.task = task;
@@ -23,7 +65,9 @@ public class Job {
         this.queuedTime = System.nanoTime();
     }
 
-    public String getKey() { return key; }
+    public JobId getId() { return id; }
+
+    public String getKey() { return id.toString(); }
 
     public String getFunction() { return function; }
 
@@ -43,8 +87,153 @@ public class Job {
 
     public void setStatus(JobStatus status) { this.status = status; }
 
+    public Priority getPriority() { return priority; }
+
+    public void setPriority(Priority priority) { this.priority = priority; }
+
+    public String getPartitionKey() { return partitionKey; }
+
+    // Jobs with the same key and priority run one at a time in submission order; null leaves the job unordered
+    public void setPartitionKey(String partitionKey) { this.partitionKey = partitionKey; }
+
+    public String getIdempotencyKey() { return idempotencyKey; }
+
+    // Resubmissions with the same key collapse into this job while it is queued or running, if the queue deduplicates
+    public void setIdempotencyKey(String idempotencyKey) { this.idempotencyKey = idempotencyKey; }
+
+    public RetryPolicy getRetryPolicy() { return retryPolicy; }
+
+    public void setRetryPolicy(RetryPolicy retryPolicy) { this.retryPolicy = retryPolicy; }
+
+    public int getAttempts() { return attempts; }
+
+    public Object getResult() { return result; }
+
+    public Throwable getFailure() { return failure; }
+
     public void run() {
-        task.run();
+        try {
+            task.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // A job materialised from a ring buffer slot has been queued since the slot was published
+    void queuedAt(long queuedTime) {
+        this.queuedTime = queuedTime;
+    }
+
+    // A scheduled job only starts queueing once its timer fires
+    void markQueued() {
+        this.queuedTime = System.nanoTime();
+        this.status = JobStatus.QUEUED;
+    }
+
+    // Claims a queued job for a consumer of the given queue. A job is only ever started by one consumer, and
+    // never by a queue it was withdrawn from.
+    boolean start(Queue queue) {
+        if (!STATUS.compareAndSet(this, JobStatus.QUEUED, JobStatus.STARTED))
+            return false;
+        if (withdrawnBy == queue) {
+            status = JobStatus.QUEUED;
+            return false;
+        }
+        return true;
+    }
+
+    // Takes a job that no consumer has started away from the queue; false if one got to it first. The status
+    // passes through STARTED so a consumer racing for it backs off, and the mark is set before the job reads as
+    // QUEUED again.
+    boolean withdraw(Queue queue) {
+        if (withdrawnBy == queue || !STATUS.compareAndSet(this, JobStatus.QUEUED, JobStatus.STARTED))
+            return false;
+        withdrawnBy = queue;
+        status = JobStatus.QUEUED;
+        return true;
+    }
+
+    // For a job waiting on a timer, once the timer thread has stopped and nothing else can publish it
+    void withdrawn(Queue queue) {
+        withdrawnBy = queue;
+        status = JobStatus.QUEUED;
+    }
+
+    Object call() throws Exception {
+        attempts++;
+        return task.call();
+    }
+
+    // A batched job's task is never called; its function's batch handler runs in its place
+    void countAttempt() {
+        attempts++;
+    }
+
+    boolean hasRetriesLeft() {
+        return attempts <= retryPolicy.maxRetries();
+    }
+
+    void complete(Object result) {
+        this.result = result;
+        this.completedTime = System.nanoTime();
+        this.status = JobStatus.COMPLETED;
+
+        CompletableFuture<Object> future = completion;
+        if (future != null)
+            future.complete(result);
+    }
+
+    void fail(JobProcessingException failure) {
+        this.failure = failure;
+        this.status = JobStatus.FAILED;
+
+        CompletableFuture<Object> future = completion;
+        if (future != null)
+            future.completeExceptionally(failure);
+    }
+
+    // Fails the handle of a job that was never run, e.g. dropped on overflow, without touching its status
+    void reject(Throwable cause) {
+        this.failure = cause;
+
+        CompletableFuture<Object> future = completion;
+        if (future != null)
+            future.completeExceptionally(cause);
+    }
+
+    // A duplicate that was collapsed into original is never run; it ends however original does
+    void follow(Job original) {
+        original.completion().whenComplete((value, cause) -> {
+            if (cause == null)
+                complete(value);
+            else if (cause instanceof JobProcessingException e)
+                fail(e);
+            else
+                reject(cause);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    CompletableFuture<Object> completion() {
+        CompletableFuture<Object> future = completion;
+        if (future != null)
+            return future;
+
+        future = new CompletableFuture<>();
+        if (!COMPLETION.compareAndSet(this, null, future))
+            return completion;
+
+        // The job may have finished before the future existed; status and completion are both
+        // volatile, so either this check or the completing thread sees the other's write.
+        JobStatus current = status;
+        if (current == JobStatus.COMPLETED)
+            future.complete(result);
+        else if (current == JobStatus.FAILED || failure != null)
+            future.completeExceptionally(failure);
+
+        return future;
     }
 
 }
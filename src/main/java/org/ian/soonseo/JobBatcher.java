@@ -0,0 +1,73 @@
+package org.ian.soonseo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Sits between one consumer and the queue's dispatcher and holds back consecutive jobs of a batched function.
+// A held group goes out when it is full, when it has been held for the configured delay, when a job of any other
+// function arrives, or when the consumer reaches the end of what the ring buffer has available and calls flush.
+// The group runs on the worker its first job was routed to. Keyed jobs are never held, since that worker may not
+// be the one their key maps to.
+final class JobBatcher implements JobDispatcher {
+
+    @FunctionalInterface
+    interface BatchDispatcher {
+
+        void dispatch(Worker worker, List<Job> jobs, BatchHandler handler) throws Exception;
+
+    }
+
+    private final Batching batching;
+    // Long.MAX_VALUE when the batching has no time limit
+    private final long maxDelayNanos;
+    private final JobDispatcher single;
+    private final BatchDispatcher batch;
+    private final List<Job> held = new ArrayList<>();
+    private Worker worker;
+    private String function;
+    private BatchHandler handler;
+    private long firstHeldAt;
+
+    JobBatcher(Batching batching, JobDispatcher single, BatchDispatcher batch) {
+        this.batching = batching;
+        this.maxDelayNanos = batching.maxDelay() == 0 ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(batching.maxDelay());
+        this.single = single;
+        this.batch = batch;
+    }
+
+    @Override
+    public void dispatch(Worker worker, Job job) throws Exception {
+        BatchHandler next = job.getPartitionKey() == null ? batching.handlers().get(job.getFunction()) : null;
+        if (next == null) {
+            flush();
+            single.dispatch(worker, job);
+            return;
+        }
+
+        if (!held.isEmpty() && !job.getFunction().equals(function))
+            flush();
+        if (held.isEmpty()) {
+            this.worker = worker;
+            this.function = job.getFunction();
+            this.handler = next;
+            this.firstHeldAt = System.nanoTime();
+        }
+        held.add(job);
+
+        if (held.size() >= batching.maxSize() || System.nanoTime() - firstHeldAt >= maxDelayNanos)
+            flush();
+    }
+
+    @Override
+    public void flush() throws Exception {
+        if (held.isEmpty())
+            return;
+
+        // The group may run on another thread while this consumer goes on filling the next one
+        List<Job> jobs = List.copyOf(held);
+        held.clear();
+        batch.dispatch(worker, jobs, handler);
+    }
+
+}
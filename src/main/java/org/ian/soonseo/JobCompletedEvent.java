@@ -0,0 +1,55 @@
+package org.ian.soonseo;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// One per attempt; the status tells a success from a failure or an attempt that will be retried
+@Name("org.ian.soonseo.JobCompleted")
+@Label("Job Completed")
+@Category("Soonseo")
+@StackTrace(false)
+@Enabled(false)
+final class JobCompletedEvent extends Event {
+
+    @Label("Job")
+    String job;
+
+    @Label("Function")
+    String function;
+
+    @Label("Status")
+    String status;
+
+    @Label("Execution Time")
+    @Timespan
+    long execution;
+
+    static void emit(Job job, JobStatus status, long execution) {
+        JobCompletedEvent event = new JobCompletedEvent();
+        if (!event.shouldCommit())
+            return;
+
+        event.job = job.getKey();
+        event.function = job.getFunction();
+        event.status = status.name();
+        event.execution = execution;
+        event.commit();
+    }
+
+    static void emit(String function, JobStatus status, long execution) {
+        JobCompletedEvent event = new JobCompletedEvent();
+        if (!event.shouldCommit())
+            return;
+
+        event.function = function;
+        event.status = status.name();
+        event.execution = execution;
+        event.commit();
+    }
+
+}
@@ -0,0 +1,12 @@
+package org.ian.soonseo;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Queue-wide totals that every worker adds to, so they survive workers being removed
+final class JobCounters {
+
+    final LongAdder completed = new LongAdder();
+    final LongAdder retried = new LongAdder();
+    final LongAdder failed = new LongAdder();
+
+}
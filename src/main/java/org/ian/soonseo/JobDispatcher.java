@@ -0,0 +1,21 @@
+package org.ian.soonseo;
+
+@FunctionalInterface
+interface JobDispatcher {
+
+    void dispatch(Worker worker, Job job) throws Exception;
+
+    // Anything that has to hold on to a published job needs it as a Job; the queue's own dispatcher runs it in place
+    default void dispatch(Worker worker, JobEvent event) throws Exception {
+        Job job = event.getJob();
+        if (job != null)
+            dispatch(worker, job);
+        else if (event.claim())
+            dispatch(worker, event.materialize());
+    }
+
+    // Called once a consumer has handled everything the ring buffer had available, so nothing stays held back
+    default void flush() throws Exception {
+    }
+
+}
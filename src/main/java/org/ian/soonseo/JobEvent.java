@@ -1,15 +1,111 @@
 package org.ian.soonseo;
 
-public class JobEvent {
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+// A ring buffer slot. A submitted job travels as a reference to its Job. A published one is written into the slot
+// itself by an EventTranslator calling setTask, and only becomes a Job when something needs one: a failure to
+// report, a virtual thread to run on, or a limiter, batch or deque to wait in.
+public class JobEvent extends JobEventPadding {
+
+    private static final AtomicIntegerFieldUpdater<JobEvent> CLAIMED =
+            AtomicIntegerFieldUpdater.newUpdater(JobEvent.class, "claimed");
 
     private Job job;
+    private WorkerRouting routing;
+    private String function;
+    private String args;
+    private SlotTask<Object> task;
+    private Object payload;
+    private long value;
+    private long queuedTime;
+    // A published job has no Job to claim, so its slot is claimed instead; drainAndShutdown races the consumer for it
+    private volatile int claimed;
 
     public Job getJob() {
         return job;
     }
 
+    // Drops what a previously published job left in the slot, which would otherwise stay reachable until the slot is
+    // published into again
     public void setJob(Job job) {
         this.job = job;
+        this.function = null;
+        this.args = null;
+        this.task = null;
+        this.payload = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <P> void setTask(String function, String args, SlotTask<P> task, P payload, long value) {
+        this.function = function;
+        this.args = args;
+        this.task = (SlotTask<Object>) task;
+        this.payload = payload;
+        this.value = value;
+    }
+
+    public String getFunction() {
+        return job != null ? job.getFunction() : function;
+    }
+
+    public String getArgs() {
+        return job != null ? job.getArgs() : args;
+    }
+
+    public Object getPayload() {
+        return payload;
+    }
+
+    public long getValue() {
+        return value;
+    }
+
+    WorkerRouting getRouting() {
+        return routing;
+    }
+
+    void setRouting(WorkerRouting routing) {
+        this.routing = routing;
+    }
+
+    String getPartitionKey() {
+        return job != null ? job.getPartitionKey() : null;
+    }
+
+    long getQueuedTime() {
+        return job != null ? job.getQueuedTime() : queuedTime;
+    }
+
+    // Before the translator runs, so a translator that throws leaves an empty slot rather than the previous job
+    void clearForPublish() {
+        job = null;
+        task = null;
+        payload = null;
+    }
+
+    void published(WorkerRouting routing, long queuedTime) {
+        this.routing = routing;
+        this.queuedTime = queuedTime;
+        this.claimed = 0;
+    }
+
+    // True once for a published job; always false for an empty slot or one carrying a Job
+    boolean claim() {
+        return job == null && task != null && CLAIMED.compareAndSet(this, 0, 1);
+    }
+
+    Object runTask() throws Exception {
+        return task.run(payload, value);
+    }
+
+    // A Job that runs this slot's task, for anything that has to outlive the slot
+    Job materialize() {
+        SlotTask<Object> task = this.task;
+        Object payload = this.payload;
+        long value = this.value;
+        Job view = new Job(function, args, () -> task.run(payload, value));
+        view.queuedAt(queuedTime);
+        return view;
     }
 
 }
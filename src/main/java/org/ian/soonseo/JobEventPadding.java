@@ -0,0 +1,9 @@
+package org.ian.soonseo;
+
+// Sits in front of JobEvent's fields. Slots are allocated back to back when the ring buffer is created, so without
+// it a producer filling one slot would keep invalidating the cache line a consumer is reading the previous one from.
+abstract class JobEventPadding {
+
+    protected long p1, p2, p3, p4, p5, p6, p7;
+
+}
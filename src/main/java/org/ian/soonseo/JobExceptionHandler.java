@@ -0,0 +1,27 @@
+package org.ian.soonseo;
+
+import com.lmax.disruptor.ExceptionHandler;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+// Logs and carries on, so one bad event can never halt a consumer the way the default FatalExceptionHandler does.
+class JobExceptionHandler implements ExceptionHandler<JobEvent> {
+
+    private static final Logger logger = LogManager.getLogger(JobExceptionHandler.class);
+
+    @Override
+    public void handleEventException(Throwable ex, long sequence, JobEvent event) {
+        logger.error("Exception processing sequence {}", sequence, ex);
+    }
+
+    @Override
+    public void handleOnStartException(Throwable ex) {
+        logger.error("Exception during consumer start", ex);
+    }
+
+    @Override
+    public void handleOnShutdownException(Throwable ex) {
+        logger.error("Exception during consumer shutdown", ex);
+    }
+
+}
@@ -0,0 +1,50 @@
+package org.ian.soonseo;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Completes with the job's result, or exceptionally with the JobProcessingException wrapping what the job threw.
+public final class JobHandle<T> {
+
+    private final Job job;
+
+    JobHandle(Job job) {
+        this.job = job;
+    }
+
+    public Job getJob() {
+        return job;
+    }
+
+    public String getKey() {
+        return job.getKey();
+    }
+
+    public JobStatus getStatus() {
+        return job.getStatus();
+    }
+
+    public boolean isDone() {
+        return job.getStatus().isTerminal() || job.getFailure() != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<T> toCompletableFuture() {
+        return (CompletableFuture<T>) job.completion();
+    }
+
+    public T join() {
+        return toCompletableFuture().join();
+    }
+
+    public T get() throws InterruptedException, ExecutionException {
+        return toCompletableFuture().get();
+    }
+
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        return toCompletableFuture().get(timeout, unit);
+    }
+
+}
@@ -0,0 +1,58 @@
+package org.ian.soonseo;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+// The jobs a deduplicating queue currently holds, by idempotency key or by function and args. A job enters on
+// submit and leaves once it completes, fails for good, is rejected or is handed off, so the index only ever
+// holds what is queued, running or waiting for a retry rather than every job ever submitted.
+final class JobIndex {
+
+    private final Deduplication deduplication;
+    private final ConcurrentHashMap<Object, Job> jobs = new ConcurrentHashMap<>();
+
+    JobIndex(Deduplication deduplication) {
+        this.deduplication = deduplication;
+    }
+
+    // Returns the job already holding the key, or null once job holds it itself. A job publishes its outcome
+    // before its consumer releases the key, so a holder that has already finished is replaced rather than
+    // followed; otherwise a resubmission from its completion callback would never run.
+    Job register(Job job) {
+        Object key = keyOf(job);
+        if (key == null)
+            return null;
+
+        while (true) {
+            Job existing = jobs.putIfAbsent(key, job);
+            if (existing != null && !existing.getStatus().isTerminal())
+                return existing;
+            if (existing == null || jobs.replace(key, existing, job)) {
+                job.indexKey = key;
+                return null;
+            }
+        }
+    }
+
+    void release(Job job) {
+        Object key = job.indexKey;
+        if (key != null) {
+            job.indexKey = null;
+            jobs.remove(key, job);
+        }
+    }
+
+    int size() {
+        return jobs.size();
+    }
+
+    private Object keyOf(Job job) {
+        if (job.getIdempotencyKey() != null)
+            return job.getIdempotencyKey();
+        return deduplication == Deduplication.FUNCTION_AND_ARGS ? new ContentKey(job.getFunction(), job.getArgs()) : null;
+    }
+
+    // Kept apart from idempotency keys, which are plain strings, so the two can never collide
+    private record ContentKey(String function, String args) {
+    }
+
+}
@@ -0,0 +1,35 @@
+package org.ian.soonseo;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("org.ian.soonseo.JobRejected")
+@Label("Job Rejected")
+@Category("Soonseo")
+@StackTrace(false)
+final class JobRejectedEvent extends Event {
+
+    @Label("Job")
+    String job;
+
+    @Label("Function")
+    String function;
+
+    @Label("Reason")
+    String reason;
+
+    static void emit(Job job, String reason) {
+        JobRejectedEvent event = new JobRejectedEvent();
+        if (!event.shouldCommit())
+            return;
+
+        event.job = job.getKey();
+        event.function = job.getFunction();
+        event.reason = reason;
+        event.commit();
+    }
+
+}
@@ -0,0 +1,52 @@
+package org.ian.soonseo;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// Flight Recorder events are only built once a recording enables them, so the disabled path costs one check.
+// Off by default even then: one per job is too many for an always-on recording.
+@Name("org.ian.soonseo.JobStarted")
+@Label("Job Started")
+@Category("Soonseo")
+@StackTrace(false)
+@Enabled(false)
+final class JobStartedEvent extends Event {
+
+    @Label("Job")
+    String job;
+
+    @Label("Function")
+    String function;
+
+    @Label("Queue Wait")
+    @Timespan
+    long queueWait;
+
+    static void emit(Job job, long queueWait) {
+        JobStartedEvent event = new JobStartedEvent();
+        if (!event.shouldCommit())
+            return;
+
+        event.job = job.getKey();
+        event.function = job.getFunction();
+        event.queueWait = queueWait;
+        event.commit();
+    }
+
+    // A published job has no id until it is materialised
+    static void emit(String function, long queueWait) {
+        JobStartedEvent event = new JobStartedEvent();
+        if (!event.shouldCommit())
+            return;
+
+        event.function = function;
+        event.queueWait = queueWait;
+        event.commit();
+    }
+
+}
@@ -1,8 +1,14 @@
 package org.ian.soonseo;
 
 public enum JobStatus {
+    SCHEDULED,
     QUEUED,
     STARTED,
+    RETRYING,
     COMPLETED,
-    FAILED
+    FAILED;
+
+    public boolean isTerminal() {
+        return this == COMPLETED || this == FAILED;
+    }
 }
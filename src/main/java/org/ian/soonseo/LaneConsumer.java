@@ -0,0 +1,145 @@
+package org.ian.soonseo;
+
+import com.lmax.disruptor.EventPoller;
+import com.lmax.disruptor.ExceptionHandler;
+import com.lmax.disruptor.RingBuffer;
+
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
+
+// Drains one ring buffer per priority from a single thread. STRICT scheduling goes back to the highest lane after
+// every lower-lane event; WEIGHTED takes up to weight * QUANTUM events from each lane per pass. In PARALLEL mode
+// each worker runs its own consumer and only executes the sequences assigned to its slot, as WorkerEventHandler does.
+class LaneConsumer implements Runnable {
+
+    private static final int QUANTUM = 32;
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 200;
+    private static final long IDLE_PARK_NANOS = 50_000;
+
+    private final EventPoller<JobEvent>[] pollers;
+    private final int[] budgets;
+    private final boolean strict;
+    private final List<Worker> workers;
+    private final int ordinal;
+    // Set by start, before the consumer's thread exists
+    private JobDispatcher dispatcher;
+    private Runnable onBatchEnd;
+    private final ExceptionHandler<JobEvent> exceptionHandler;
+    private final WaitStrategyType waitStrategy;
+    private final EventPoller.Handler<JobEvent> handler = this::onEvent;
+    private volatile boolean running = true;
+    private int budget;
+    private int polled;
+
+    // ordinal < 0 means a SERIAL consumer that runs every job itself
+    LaneConsumer(RingBuffer<JobEvent>[] lanes, PriorityLanes priorityLanes, List<Worker> workers, int ordinal,
+                 ExceptionHandler<JobEvent> exceptionHandler, WaitStrategyType waitStrategy) {
+        this.pollers = newPollers(lanes.length);
+        this.budgets = new int[lanes.length];
+        this.strict = priorityLanes.scheduling() == LaneScheduling.STRICT;
+        for (int i = 0; i < lanes.length; i++) {
+            pollers[i] = lanes[i].newPoller();
+            lanes[i].addGatingSequences(pollers[i].getSequence());
+            budgets[i] = priorityLanes.weight(Priority.values()[i]) * QUANTUM;
+        }
+        this.workers = workers;
+        this.ordinal = ordinal;
+        this.exceptionHandler = exceptionHandler;
+        this.waitStrategy = waitStrategy;
+    }
+
+    // Generic arrays cannot be created directly; the wildcard array only ever holds EventPoller<JobEvent>
+    @SuppressWarnings("unchecked")
+    private static EventPoller<JobEvent>[] newPollers(int count) {
+        return (EventPoller<JobEvent>[]) new EventPoller<?>[count];
+    }
+
+    // Takes the queue's callbacks only once the queue is fully built, then starts polling on a new thread
+    void start(ThreadFactory threadFactory, JobDispatcher dispatcher, Runnable onBatchEnd) {
+        this.dispatcher = dispatcher;
+        this.onBatchEnd = onBatchEnd;
+        threadFactory.newThread(this).start();
+    }
+
+    void halt() {
+        running = false;
+    }
+
+    @Override
+    public void run() {
+        int idleCount = 0;
+        while (running) {
+            boolean worked = strict ? pollStrict() : pollWeighted();
+            if (worked) {
+                idleCount = 0;
+                onBatchEnd.run();
+            } else {
+                idle(idleCount++);
+            }
+        }
+    }
+
+    private boolean pollStrict() {
+        for (int i = 0; i < pollers.length; i++) {
+            // The top lane drains everything available; lower lanes give up the thread after each event
+            if (poll(i, i == 0 ? Integer.MAX_VALUE : 1))
+                return true;
+        }
+        return false;
+    }
+
+    private boolean pollWeighted() {
+        boolean worked = false;
+        for (int i = 0; i < pollers.length; i++)
+            worked |= poll(i, budgets[i]);
+        return worked;
+    }
+
+    private boolean poll(int lane, int limit) {
+        budget = limit;
+        polled = 0;
+        try {
+            pollers[lane].poll(handler);
+        } catch (Exception e) {
+            // onEvent hands job failures to the exception handler, so this is a poller fault
+            throw new IllegalStateException("Failed polling lane " + Priority.values()[lane], e);
+        }
+        try {
+            dispatcher.flush();
+        } catch (Throwable e) {
+            exceptionHandler.handleEventException(e, pollers[lane].getSequence().get(), null);
+        }
+        return polled > 0;
+    }
+
+    private boolean onEvent(JobEvent event, long sequence, boolean endOfBatch) {
+        polled++;
+        // Parallel lane consumers are never resized, so the routing's workers are exactly one per consumer
+        Worker owner = event.getRouting().owner(sequence, event.getPartitionKey());
+        Worker worker = ordinal < 0 || owner == workers.get(ordinal) ? owner : null;
+        if (worker != null) {
+            try {
+                dispatcher.dispatch(worker, event);
+            } catch (Throwable e) {
+                // The poller would hand the same event out again if this escaped
+                exceptionHandler.handleEventException(e, sequence, event);
+            }
+        }
+        return polled < budget;
+    }
+
+    // A consumer watching several ring buffers cannot block on any one of them, so the blocking strategies
+    // back off to short parks instead; the spinning ones keep their usual behaviour.
+    private void idle(int idleCount) {
+        if (waitStrategy == WaitStrategyType.BUSY_SPIN || idleCount < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (waitStrategy == WaitStrategyType.YIELDING || idleCount < YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+}
@@ -0,0 +1,10 @@
+package org.ian.soonseo;
+
+public enum LaneScheduling {
+    // Every priority shares one ring buffer and runs in submission order
+    NONE,
+    // A lower lane only gets an event whenever every higher lane is empty
+    STRICT,
+    // Each pass over the lanes takes up to weight * quantum events from each one, so low lanes are never starved
+    WEIGHTED
+}
@@ -0,0 +1,19 @@
+package org.ian.soonseo;
+
+import org.ian.soonseo.metrics.CapturedLaneMetrics;
+import org.ian.soonseo.metrics.LatencyHistogram;
+
+// Time jobs of one priority spent between being queued and being dispatched
+class LaneStats {
+
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+
+    void record(long waitNanos) {
+        queueWait.record(waitNanos);
+    }
+
+    CapturedLaneMetrics capture(Priority priority, long depth) {
+        return new CapturedLaneMetrics(priority, depth, queueWait.capture());
+    }
+
+}
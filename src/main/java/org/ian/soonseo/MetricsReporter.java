@@ -0,0 +1,161 @@
+package org.ian.soonseo;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Samples a queue's counters at a fixed interval into a preallocated ring, so recent saturation and throughput
+// history is available without the application polling captureQueueMetrics. Each sample is also committed as a
+// Flight Recorder event, and serve() exposes the latest one as Prometheus text on the JDK's HTTP server.
+public final class MetricsReporter implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(MetricsReporter.class);
+
+    private final Queue queue;
+    private final MetricsSample[] ring;
+    private final long intervalNanos;
+    private volatile long samples;
+    private volatile boolean running;
+    private Thread thread;
+    private HttpServer server;
+
+    public MetricsReporter(Queue queue, int capacity, long intervalMillis) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        if (intervalMillis <= 0)
+            throw new IllegalArgumentException("intervalMillis must be positive: " + intervalMillis);
+
+        this.queue = queue;
+        this.ring = new MetricsSample[capacity];
+        for (int i = 0; i < capacity; i++)
+            ring[i] = new MetricsSample();
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    }
+
+    public synchronized MetricsReporter start() {
+        if (thread == null) {
+            running = true;
+            thread = Thread.ofVirtual().name("soonseo-metrics").start(this::run);
+        }
+        return this;
+    }
+
+    // Serves GET /metrics until the reporter is closed; pass port 0 to pick a free one
+    public synchronized MetricsReporter serve(InetSocketAddress address) throws IOException {
+        if (server != null)
+            throw new IllegalStateException("Already serving on " + server.getAddress());
+
+        server = HttpServer.create(address, 0);
+        server.createContext("/metrics", this::scrape);
+        server.start();
+        return this;
+    }
+
+    public synchronized InetSocketAddress getAddress() {
+        return server == null ? null : server.getAddress();
+    }
+
+    public long getSampleCount() {
+        return samples;
+    }
+
+    public int getCapacity() {
+        return ring.length;
+    }
+
+    // Copies the most recent sample; returns false if none was taken yet
+    public boolean latest(MetricsSample into) {
+        long taken = samples;
+        if (taken == 0)
+            return false;
+        ring[(int) ((taken - 1) % ring.length)].copyTo(into);
+        return true;
+    }
+
+    // Copies up to into.length of the most recent samples, oldest first, into caller-owned slots
+    public int history(MetricsSample[] into) {
+        long taken = samples;
+        int count = (int) Math.min(Math.min(taken, ring.length), into.length);
+        long first = taken - count;
+        for (int i = 0; i < count; i++)
+            ring[(int) ((first + i) % ring.length)].copyTo(into[i]);
+        return count;
+    }
+
+    private void run() {
+        long next = System.nanoTime();
+        while (running) {
+            try {
+                sampleNow();
+            } catch (RuntimeException e) {
+                logger.warn("Failed to sample queue metrics", e);
+            }
+
+            next += intervalNanos;
+            long sleep;
+            while (running && (sleep = next - System.nanoTime()) > 0)
+                LockSupport.parkNanos(this, sleep);
+        }
+    }
+
+    // Only ever called from one thread at a time: the sampling thread, or a test that never started it
+    void sampleNow() {
+        long taken = samples;
+        MetricsSample slot = ring[(int) (taken % ring.length)];
+        slot.beginWrite();
+        queue.sample(slot);
+        slot.endWrite();
+        samples = taken + 1;
+        QueueSampleEvent.emit(slot);
+    }
+
+    private void scrape(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            // Without a running sampler the scrape reads the queue directly
+            MetricsSample sample = new MetricsSample();
+            if (!latest(sample))
+                queue.sample(sample);
+
+            String text = PrometheusFormat.format(sample, queue.captureFunctionMetrics(), queue.captureLimiterMetrics());
+            byte[] body = text.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", PrometheusFormat.CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    // Waits for a sample in progress, so no sample is taken once close returns
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+}
@@ -0,0 +1,189 @@
+package org.ian.soonseo;
+
+import org.ian.soonseo.metrics.LatencySample;
+
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+// One reusable sample of the queue counters plus each worker's counters and latency histograms. A MetricsReporter
+// keeps a fixed ring of these and overwrites them in place; readers copy a slot out under a sequence lock instead
+// of the reporter allocating a snapshot per interval. Worker slots only grow when the queue gains workers.
+// Individual jobs are not sampled: the job store is unbounded, so job latency is covered by the worker histograms.
+public final class MetricsSample {
+
+    private static final WorkerSample[] NO_WORKERS = new WorkerSample[0];
+
+    private volatile long version;
+    private WorkerSample[] workerSamples = NO_WORKERS;
+
+    long timestamp;
+    long workers;
+    long queued;
+    long completed;
+    long retried;
+    long failed;
+    long rejected;
+    long coalesced;
+    long scheduled;
+    long overflow;
+    long inFlight;
+    long bufferSize;
+    long bufferUsed;
+
+    // Wall-clock milliseconds when the sample was taken
+    public long timestamp() { return timestamp; }
+
+    public long workers() { return workers; }
+
+    public long queued() { return queued; }
+
+    public long completed() { return completed; }
+
+    public long retried() { return retried; }
+
+    public long failed() { return failed; }
+
+    public long rejected() { return rejected; }
+
+    // Duplicate submissions collapsed into a job already queued or running
+    public long coalesced() { return coalesced; }
+
+    public long scheduled() { return scheduled; }
+
+    public long overflow() { return overflow; }
+
+    public long inFlight() { return inFlight; }
+
+    // Summed over all lanes when priority lanes are enabled
+    public long bufferSize() { return bufferSize; }
+
+    public long bufferUsed() { return bufferUsed; }
+
+    public double saturation() {
+        return bufferSize == 0 ? 0 : (double) bufferUsed / bufferSize;
+    }
+
+    // One per worker, index < workers()
+    public WorkerSample worker(int index) {
+        if (index < 0 || index >= workers)
+            throw new IndexOutOfBoundsException("worker " + index + " of " + workers);
+        return workerSamples[index];
+    }
+
+    // Slot for the writer to fill in
+    WorkerSample workerSlot(int index) {
+        ensureWorkers(index + 1);
+        return workerSamples[index];
+    }
+
+    private void ensureWorkers(int count) {
+        if (count <= workerSamples.length)
+            return;
+        WorkerSample[] grown = Arrays.copyOf(workerSamples, Math.max(count, workerSamples.length * 2));
+        for (int i = workerSamples.length; i < grown.length; i++)
+            grown[i] = new WorkerSample();
+        workerSamples = grown;
+    }
+
+    // Single writer only: the reporter's sampling thread
+    void beginWrite() {
+        version = version + 1;
+        VarHandle.storeStoreFence();
+    }
+
+    void endWrite() {
+        version = version + 1;
+    }
+
+    // Retries while the slot is being overwritten
+    void copyTo(MetricsSample target) {
+        while (true) {
+            long before = version;
+            if ((before & 1) == 0) {
+                target.timestamp = timestamp;
+                target.workers = workers;
+                target.queued = queued;
+                target.completed = completed;
+                target.retried = retried;
+                target.failed = failed;
+                target.rejected = rejected;
+                target.coalesced = coalesced;
+                target.scheduled = scheduled;
+                target.overflow = overflow;
+                target.inFlight = inFlight;
+                target.bufferSize = bufferSize;
+                target.bufferUsed = bufferUsed;
+                if (copyWorkersTo(target)) {
+                    VarHandle.loadLoadFence();
+                    if (version == before)
+                        return;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    // False when the slots were caught mid-growth; the caller retries like any other torn read
+    private boolean copyWorkersTo(MetricsSample target) {
+        WorkerSample[] source = workerSamples;
+        int count = (int) target.workers;
+        if (count < 0 || count > source.length)
+            return false;
+        target.ensureWorkers(count);
+        for (int i = 0; i < count; i++) {
+            WorkerSample worker = source[i];
+            if (worker == null)
+                return false;
+            worker.copyTo(target.workerSamples[i]);
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricsSample[timestamp=" + timestamp + ", workers=" + workers + ", queued=" + queued
+                + ", completed=" + completed + ", retried=" + retried + ", failed=" + failed
+                + ", rejected=" + rejected + ", coalesced=" + coalesced + ", scheduled=" + scheduled
+                + ", overflow=" + overflow
+                + ", inFlight=" + inFlight + ", bufferSize=" + bufferSize + ", bufferUsed=" + bufferUsed + "]";
+    }
+
+    public static final class WorkerSample {
+
+        String workerId;
+        long completed;
+        long retried;
+        long failed;
+        final LatencySample queueWait = new LatencySample();
+        final LatencySample execution = new LatencySample();
+
+        public String workerId() { return workerId; }
+
+        public long completed() { return completed; }
+
+        public long retried() { return retried; }
+
+        public long failed() { return failed; }
+
+        public LatencySample queueWait() { return queueWait; }
+
+        public LatencySample execution() { return execution; }
+
+        void copyTo(WorkerSample target) {
+            target.workerId = workerId;
+            target.completed = completed;
+            target.retried = retried;
+            target.failed = failed;
+            queueWait.copyTo(target.queueWait);
+            execution.copyTo(target.execution);
+        }
+
+        @Override
+        public String toString() {
+            return "WorkerSample[workerId=" + workerId + ", completed=" + completed + ", retried=" + retried
+                    + ", failed=" + failed + ", queueWait=" + queueWait + ", execution=" + execution + "]";
+        }
+
+    }
+
+}
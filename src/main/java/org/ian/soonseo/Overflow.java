@@ -0,0 +1,48 @@
+package org.ian.soonseo;
+
+import java.util.function.Consumer;
+
+// How submissions behave once the ring buffer is full. Jobs that cannot be published right away wait in an
+// overflow queue of up to capacity jobs; the policy decides what happens when that queue is full as well.
+public record Overflow(OverflowPolicy policy, int capacity, long blockTimeout, Consumer<Job> spillHandler) {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    public Overflow {
+        if (capacity < 0)
+            throw new IllegalArgumentException("capacity must not be negative: " + capacity);
+        if (policy == OverflowPolicy.SPILL && spillHandler == null)
+            throw new IllegalArgumentException("SPILL requires a spill handler");
+    }
+
+    public static Overflow reject() {
+        return new Overflow(OverflowPolicy.REJECT, DEFAULT_CAPACITY, 0, null);
+    }
+
+    public static Overflow block(long blockTimeout) {
+        return new Overflow(OverflowPolicy.BLOCK, DEFAULT_CAPACITY, blockTimeout, null);
+    }
+
+    // The default: waits as long as maxRetries backoffs doubling from backoffTime add up to, which is how long submit
+    // used to retry before giving up
+    public static Overflow retrying(int maxRetries, long backoffTime) {
+        return block(backoffBudget(maxRetries, backoffTime));
+    }
+
+    private static long backoffBudget(int maxRetries, long backoffTime) {
+        if (maxRetries <= 0 || backoffTime <= 0)
+            return 0;
+        if (maxRetries >= Long.SIZE - 1 || backoffTime > Long.MAX_VALUE >> maxRetries)
+            return Long.MAX_VALUE;
+        return backoffTime * ((1L << maxRetries) - 1);
+    }
+
+    public static Overflow dropOldest(int capacity) {
+        return new Overflow(OverflowPolicy.DROP_OLDEST, capacity, 0, null);
+    }
+
+    public static Overflow spill(int capacity, Consumer<Job> spillHandler) {
+        return new Overflow(OverflowPolicy.SPILL, capacity, 0, spillHandler);
+    }
+
+}
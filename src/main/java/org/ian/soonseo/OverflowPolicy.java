@@ -0,0 +1,12 @@
+package org.ian.soonseo;
+
+public enum OverflowPolicy {
+    // Reject at once; the caller decides whether and when to try again
+    REJECT,
+    // Wait up to the block timeout for a free slot
+    BLOCK,
+    // Make room in the overflow queue by discarding its oldest job
+    DROP_OLDEST,
+    // Hand jobs that do not fit in the overflow queue to a secondary queue
+    SPILL
+}
@@ -0,0 +1,8 @@
+package org.ian.soonseo;
+
+// Declared from most to least urgent; with priority lanes enabled each value gets its own ring buffer.
+public enum Priority {
+    HIGH,
+    NORMAL,
+    LOW
+}
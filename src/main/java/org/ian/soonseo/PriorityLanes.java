@@ -0,0 +1,36 @@
+package org.ian.soonseo;
+
+// How jobs of different priorities share the workers. With STRICT or WEIGHTED scheduling every Priority
+// gets its own ring buffer of Config.bufferSize slots, so a backlog in one lane cannot delay the others.
+public record PriorityLanes(LaneScheduling scheduling, int highWeight, int normalWeight, int lowWeight) {
+
+    public PriorityLanes {
+        if (highWeight <= 0 || normalWeight <= 0 || lowWeight <= 0)
+            throw new IllegalArgumentException("Lane weights must be positive");
+    }
+
+    public static PriorityLanes none() {
+        return new PriorityLanes(LaneScheduling.NONE, 1, 1, 1);
+    }
+
+    public static PriorityLanes strict() {
+        return new PriorityLanes(LaneScheduling.STRICT, 1, 1, 1);
+    }
+
+    public static PriorityLanes weighted(int highWeight, int normalWeight, int lowWeight) {
+        return new PriorityLanes(LaneScheduling.WEIGHTED, highWeight, normalWeight, lowWeight);
+    }
+
+    public boolean enabled() {
+        return scheduling != LaneScheduling.NONE;
+    }
+
+    int weight(Priority priority) {
+        return switch (priority) {
+            case HIGH -> highWeight;
+            case NORMAL -> normalWeight;
+            case LOW -> lowWeight;
+        };
+    }
+
+}
@@ -0,0 +1,155 @@
+package org.ian.soonseo;
+
+import org.ian.soonseo.metrics.CapturedFunctionMetrics;
+import org.ian.soonseo.metrics.CapturedLatencyMetrics;
+import org.ian.soonseo.metrics.CapturedLimiterMetrics;
+import org.ian.soonseo.metrics.LatencySample;
+
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+// Prometheus text exposition format, version 0.0.4
+final class PrometheusFormat {
+
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private PrometheusFormat() {
+    }
+
+    static String format(MetricsSample sample, List<CapturedFunctionMetrics> functions,
+                         List<CapturedLimiterMetrics> limiters) {
+        StringBuilder out = new StringBuilder(2048);
+        counter(out, "soonseo_jobs_queued_total", "Jobs accepted into the ring buffer", sample.queued());
+        counter(out, "soonseo_jobs_completed_total", "Jobs that completed successfully", sample.completed());
+        counter(out, "soonseo_jobs_retried_total", "Failed attempts that were scheduled for a retry", sample.retried());
+        counter(out, "soonseo_jobs_failed_total", "Jobs that failed without retries left", sample.failed());
+        counter(out, "soonseo_jobs_rejected_total", "Jobs rejected by the overflow policy", sample.rejected());
+        counter(out, "soonseo_jobs_coalesced_total", "Duplicate submissions collapsed into a pending job", sample.coalesced());
+        gauge(out, "soonseo_workers", "Workers consuming the queue", sample.workers());
+        gauge(out, "soonseo_jobs_scheduled", "Timers waiting to inject a job, including retries and throttled jobs",
+                sample.scheduled());
+        gauge(out, "soonseo_jobs_overflow", "Jobs waiting in the overflow queue", sample.overflow());
+        gauge(out, "soonseo_jobs_in_flight", "Jobs running on virtual threads", sample.inFlight());
+        gauge(out, "soonseo_buffer_size", "Ring buffer slots", sample.bufferSize());
+        gauge(out, "soonseo_buffer_used", "Ring buffer slots holding unconsumed jobs", sample.bufferUsed());
+
+        if (sample.workers() > 0) {
+            workerCounter(out, "soonseo_worker_jobs_completed_total", "Jobs a worker completed", sample,
+                    MetricsSample.WorkerSample::completed);
+            workerCounter(out, "soonseo_worker_jobs_retried_total", "Failed attempts on a worker that were retried",
+                    sample, MetricsSample.WorkerSample::retried);
+            workerCounter(out, "soonseo_worker_jobs_failed_total", "Jobs that failed on a worker without retries left",
+                    sample, MetricsSample.WorkerSample::failed);
+            workerLatencies(out, "soonseo_worker_queue_wait_seconds", "Time from queued to started per worker",
+                    sample, true);
+            workerLatencies(out, "soonseo_worker_execution_seconds", "Execution time per worker", sample, false);
+        }
+        if (!functions.isEmpty()) {
+            latencies(out, "soonseo_job_queue_wait_seconds", "Time from queued to started per function",
+                    functions, true);
+            latencies(out, "soonseo_job_execution_seconds", "Execution time per function", functions, false);
+        }
+        if (!limiters.isEmpty()) {
+            header(out, "soonseo_limiter_permits", "Rate limit permits a function could use right now", "gauge");
+            for (CapturedLimiterMetrics limiter : limiters) {
+                if (limiter.availablePermits() >= 0)
+                    labelled(out, "soonseo_limiter_permits", "function", limiter.function(),
+                            limiter.availablePermits());
+            }
+            header(out, "soonseo_limiter_in_flight", "Running jobs of a function with a concurrency cap", "gauge");
+            for (CapturedLimiterMetrics limiter : limiters)
+                labelled(out, "soonseo_limiter_in_flight", "function", limiter.function(), limiter.inFlight());
+            header(out, "soonseo_limiter_parked", "Jobs of a function held back by its limits", "gauge");
+            for (CapturedLimiterMetrics limiter : limiters)
+                labelled(out, "soonseo_limiter_parked", "function", limiter.function(), limiter.parked());
+            header(out, "soonseo_limiter_throttled_total", "Times a job of a function was held back by its limits", "counter");
+            for (CapturedLimiterMetrics limiter : limiters)
+                labelled(out, "soonseo_limiter_throttled_total", "function", limiter.function(), limiter.throttled());
+        }
+        return out.toString();
+    }
+
+    private static void labelled(StringBuilder out, String name, String label, String labelValue, long value) {
+        out.append(name).append('{').append(label).append("=\"");
+        escape(out, labelValue);
+        out.append("\"} ").append(value).append('\n');
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        header(out, name, help, "counter");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, long value) {
+        header(out, name, help, "gauge");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void workerCounter(StringBuilder out, String name, String help, MetricsSample sample,
+                                      ToLongFunction<MetricsSample.WorkerSample> counter) {
+        header(out, name, help, "counter");
+        for (int i = 0; i < sample.workers(); i++) {
+            MetricsSample.WorkerSample worker = sample.worker(i);
+            labelled(out, name, "worker", worker.workerId(), counter.applyAsLong(worker));
+        }
+    }
+
+    private static void workerLatencies(StringBuilder out, String name, String help, MetricsSample sample,
+                                        boolean queueWait) {
+        header(out, name, help, "summary");
+        for (int i = 0; i < sample.workers(); i++) {
+            MetricsSample.WorkerSample worker = sample.worker(i);
+            LatencySample latency = queueWait ? worker.queueWait() : worker.execution();
+            summary(out, name, "worker", worker.workerId(),
+                    latency.count(), latency.sum(), latency.p50(), latency.p99(), latency.p999());
+        }
+    }
+
+    private static void latencies(StringBuilder out, String name, String help, List<CapturedFunctionMetrics> functions,
+                                  boolean queueWait) {
+        header(out, name, help, "summary");
+        for (CapturedFunctionMetrics function : functions) {
+            CapturedLatencyMetrics latency = queueWait ? function.queueWait() : function.execution();
+            summary(out, name, "function", function.function(),
+                    latency.count(), latency.sum(), latency.p50(), latency.p99(), latency.p999());
+        }
+    }
+
+    private static void summary(StringBuilder out, String name, String label, String labelValue,
+                                long count, long sumNanos, long p50, long p99, long p999) {
+        quantile(out, name, label, labelValue, "0.5", p50);
+        quantile(out, name, label, labelValue, "0.99", p99);
+        quantile(out, name, label, labelValue, "0.999", p999);
+        out.append(name).append("_sum{").append(label).append("=\"");
+        escape(out, labelValue);
+        out.append("\"} ").append(sumNanos / NANOS_PER_SECOND).append('\n');
+        labelled(out, name + "_count", label, labelValue, count);
+    }
+
+    private static void quantile(StringBuilder out, String name, String label, String labelValue, String quantile,
+                                 long nanos) {
+        out.append(name).append('{').append(label).append("=\"");
+        escape(out, labelValue);
+        out.append("\",quantile=\"").append(quantile).append("\"} ").append(nanos / NANOS_PER_SECOND).append('\n');
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void escape(StringBuilder out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> out.append("\\\\");
+                case '"' -> out.append("\\\"");
+                case '\n' -> out.append("\\n");
+                default -> out.append(c);
+            }
+        }
+    }
+
+}
@@ -3,101 +3,1096 @@ package org.ian.soonseo;
 import com.lmax.disruptor.*;
 import com.lmax.disruptor.dsl.Disruptor;
 import com.lmax.disruptor.dsl.ProducerType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.ian.soonseo.exception.JobProcessingException;
+import org.ian.soonseo.journal.JobJournal;
+import org.ian.soonseo.journal.RecoveredJob;
+import org.ian.soonseo.metrics.CapturedFunctionMetrics;
 import org.ian.soonseo.metrics.CapturedJobMetrics;
+import org.ian.soonseo.metrics.CapturedLaneMetrics;
+import org.ian.soonseo.metrics.CapturedLimiterMetrics;
 import org.ian.soonseo.metrics.CapturedQueueMetrics;
 import org.ian.soonseo.metrics.CapturedWorkerMetrics;
+import org.ian.soonseo.store.JobStore;
+import org.ian.soonseo.store.UnboundedJobStore;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
-public class Queue {
+// Final because the constructor starts the consumer, worker and timer threads, which call back into the queue;
+// a subclass would be reachable from them before its own fields were set.
+public final class Queue {
 
-    private final RingBuffer<JobEvent> ringBuffer;
+    private static final Logger logger = LogManager.getLogger(Queue.class);
+
+    private final Disruptor<JobEvent> disruptor;
+    private final RingBuffer<JobEvent>[] lanes;
+    private final LaneStats[] laneStats;
+    private final List<LaneConsumer> laneConsumers = new ArrayList<>();
+    private final List<WorkerEventHandler> workerConsumers = new CopyOnWriteArrayList<>();
     private final List<Worker> workers;
-    private final ConcurrentHashMap<String, Job> jobMap = new ConcurrentHashMap<>();
-    private final AtomicLong queuedJobs = new AtomicLong(0);
+    private final ThreadFactory threadFactory;
+    private final JobExceptionHandler exceptionHandler = new JobExceptionHandler();
+    private final ReentrantLock resizeLock = new ReentrantLock();
+    // Read by producers once per publish and stamped into the event
+    private volatile WorkerRouting routing;
+    private final JobCounters totals = new JobCounters();
+    private final AutoScaler autoScaler;
+    private final boolean serialDispatch;
+    private final WorkStealingPool stealingPool;
+    private final JobStore jobStore;
+    // Striped so concurrent producers never contend on one cache line
+    private final LongAdder queuedJobs = new LongAdder();
     private final ExecutorService executorService;
-    private final int maxRetries;
-    private final long backoffTime;
+    private final ExecutionMode executionMode;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final Overflow overflow;
+    private final boolean multiProducer;
+    private final ArrayDeque<PendingSubmit> overflowQueue = new ArrayDeque<>();
+    private final ReentrantLock overflowLock = new ReentrantLock();
+    private volatile int overflowSize;
+    private final LongAdder rejectedJobs = new LongAdder();
+    private final JobIndex jobIndex;
+    private final Batching batching;
+    private final Throttle throttle;
+    private final LongAdder coalescedJobs = new LongAdder();
+    private final TimingWheel timingWheel;
+    private final JobJournal journal;
+    private final boolean awaitSync;
+    private final List<JobHandle<?>> recoveredJobs = new ArrayList<>();
+    private final FunctionMetrics functionMetrics = new FunctionMetrics();
+    // Cleared by shutdown and drainAndShutdown; retries and overflowed jobs that were already accepted still go in
+    private volatile boolean accepting = true;
 
     public Queue(Config config) {
-        ThreadFactory threadFactory = Thread.ofVirtual().factory();
-        Disruptor<JobEvent> disruptor = new Disruptor<>(
-                JobEvent::new,
-                config.bufferSize(),
-                threadFactory,
-                ProducerType.MULTI,
-                new YieldingWaitStrategy()
-        );
+        this(config, new UnboundedJobStore());
+    }
+
+    @SuppressWarnings("unchecked")
+    public Queue(Config config, JobStore jobStore) {
+        threadFactory = config.waitStrategy().requiresPlatformThreads()
+                ? Thread.ofPlatform().daemon().name("soonseo-consumer-", 0).factory()
+                : Thread.ofVirtual().factory();
 
         workers = new CopyOnWriteArrayList<>();
+        this.jobStore = jobStore;
         executorService = Executors.newVirtualThreadPerTaskExecutor();
-        this.maxRetries = config.maxRetries();
-        this.backoffTime = config.backoffTime();
+        this.executionMode = config.executionMode();
+        this.maxInFlight = config.maxInFlight();
+        this.inFlight = new Semaphore(maxInFlight);
+        this.overflow = config.overflow();
+        this.multiProducer = config.producerType() == ProducerType.MULTI;
+        // Work stealing keeps the single consumer and moves execution onto the workers' own threads
+        this.serialDispatch = config.dispatchMode() != DispatchMode.PARALLEL;
+        this.stealingPool = config.dispatchMode() == DispatchMode.WORK_STEALING
+                ? new WorkStealingPool(config.bufferSize(), threadFactory, this::run)
+                : null;
+        this.timingWheel = new TimingWheel(this::injectDue);
+        this.journal = openJournal(config.durability());
+        this.awaitSync = config.durability().awaitSync();
+        this.jobIndex = config.deduplication() == Deduplication.NONE ? null : new JobIndex(config.deduplication());
+        this.batching = config.batching();
+        this.throttle = config.throttling().enabled() ? new Throttle(config.throttling(), this::park) : null;
 
         for (int i = 0; i < config.workerSize(); i++) {
-            Worker worker = new Worker();
+            Worker worker = newWorker();
             workers.add(worker);
+            if (stealingPool != null)
+                stealingPool.add(worker);
         }
+        routing = WorkerRouting.of(workers);
+        autoScaler = config.autoScaling().enabled() ? new AutoScaler(this, config.autoScaling()) : null;
 
-        disruptor.handleEventsWith((event, sequence, endOfBatch) -> {
-            Worker worker = workers.get((int) (sequence % workers.size()));
-            worker.process(event.getJob());
-        });
+        if (config.priorityLanes().enabled()) {
+            disruptor = null;
+            lanes = newLanes(Priority.values().length);
+            laneStats = new LaneStats[lanes.length];
+            for (int i = 0; i < lanes.length; i++) {
+                // Lane consumers poll rather than wait, so producers never need to signal a lock
+                lanes[i] = RingBuffer.create(config.producerType(), JobEvent::new, config.bufferSize(), new BusySpinWaitStrategy());
+                laneStats[i] = new LaneStats();
+            }
+            startLaneConsumers(config);
+            recover(config.durability());
+            startAutoScaler();
+            return;
+        }
+
+        disruptor = new Disruptor<>(
+                JobEvent::new,
+                config.bufferSize(),
+                threadFactory,
+                config.producerType(),
+                config.waitStrategy().create()
+        );
+        disruptor.setDefaultExceptionHandler(exceptionHandler);
+        if (serialDispatch)
+            disruptor.handleEventsWith(new SerialEventHandler(consumerDispatcher(), this::drainOverflow));
 
         disruptor.start();
-        ringBuffer = disruptor.getRingBuffer();
+        lanes = newLanes(1);
+        lanes[0] = disruptor.getRingBuffer();
+        laneStats = null;
+        // Parallel consumers are managed outside the DSL so workers can join and leave a running ring buffer
+        if (!serialDispatch) {
+            for (Worker worker : workers)
+                startWorkerConsumer(worker);
+        }
+        recover(config.durability());
+        startAutoScaler();
     }
 
-    public List<Worker> getWorkers() {
-        return workers;
+    // Generic arrays cannot be created directly; the wildcard array only ever holds RingBuffer<JobEvent>
+    @SuppressWarnings("unchecked")
+    private static RingBuffer<JobEvent>[] newLanes(int count) {
+        return (RingBuffer<JobEvent>[]) new RingBuffer<?>[count];
+    }
+
+    private Worker newWorker() {
+        Worker worker = new Worker();
+        // submit refuses jobs with retries on a single-producer queue; this covers jobs rebuilt from the journal
+        worker.setRetriesEnabled(multiProducer);
+        worker.setFunctionMetrics(functionMetrics);
+        worker.setTotals(totals);
+        if (journal != null)
+            worker.setTerminalListener(this::journalTerminal);
+        return worker;
     }
 
-    public void submit(Job job) throws RejectedExecutionException {
-        int retryCount = 0;
-        long backoff = backoffTime;
-        boolean submitted = false;
+    // Returns the sequence the consumer starts after: the ring buffer's cursor when it was added as a gating sequence
+    private long startWorkerConsumer(Worker worker) {
+        RingBuffer<JobEvent> ringBuffer = lanes[0];
+        WorkerEventHandler handler = new WorkerEventHandler(worker, workerConsumers, consumerDispatcher(), this::drainOverflow);
+        BatchEventProcessor<JobEvent> processor = new BatchEventProcessorBuilder()
+                .build(ringBuffer, ringBuffer.newBarrier(), handler);
+        processor.setExceptionHandler(exceptionHandler);
+        handler.bind(processor);
+        ringBuffer.addGatingSequences(processor.getSequence());
+        workerConsumers.add(handler);
 
-        while (retryCount <= maxRetries && !submitted) {
+        threadFactory.newThread(() -> {
             try {
-                long sequence = ringBuffer.tryNext();
-                ringBuffer.get(sequence).setJob(job);
-                ringBuffer.publish(sequence);
-                queuedJobs.incrementAndGet();
-                jobMap.put(job.getKey(), job);
-                submitted = true;
-            } catch (InsufficientCapacityException e) {
-                retryCount++;
-                workers.forEach(Worker::incrementRetries);
-
-                if (retryCount > maxRetries)
-                    throw new RejectedExecutionException("Failed to submit job after " + maxRetries + " retries: " + job.getKey());
+                processor.run();
+            } finally {
+                ringBuffer.removeGatingSequence(processor.getSequence());
+                workerConsumers.remove(handler);
+            }
+        }).start();
+        return processor.getSequence().get();
+    }
+
+    private void startAutoScaler() {
+        if (autoScaler != null)
+            autoScaler.start();
+    }
+
+    private static JobJournal openJournal(Durability durability) {
+        if (!durability.enabled())
+            return null;
+        try {
+            return JobJournal.open(durability.directory(), durability.segmentSize(), durability.syncInterval());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open journal in " + durability.directory(), e);
+        }
+    }
+
+    // Resubmits what the journal still lists as unfinished. Jobs whose function is not registered stay in the
+    // journal untouched, so registering the handler and restarting runs them later.
+    private void recover(Durability durability) {
+        if (journal == null || journal.recovered().isEmpty())
+            return;
+
+        for (RecoveredJob recovered : journal.recovered()) {
+            Callable<?> task = durability.registry().create(recovered.function(), recovered.args());
+            if (task == null) {
+                logger.warn("No handler registered for {}, leaving job {} in the journal", recovered.function(), recovered.id());
+                continue;
+            }
+
+            Job job = new Job(recovered.id(), recovered.function(), recovered.args(), task);
+            job.setPriority(recovered.priority());
+            job.setPartitionKey(recovered.partitionKey());
+            job.journaled = true;
+            recoveredJobs.add(new JobHandle<>(job));
+        }
+
+        // Consumers are already running, so waiting for room cannot stall; giving up would drop journaled work
+        Job[] jobs = recoveredJobs.stream().map(JobHandle::getJob).toArray(Job[]::new);
+        int published = 0;
+        while (published < jobs.length) {
+            int count = publishBatch(jobs, published, true);
+            if (count == 0)
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            published += count;
+        }
+    }
+
+    // Jobs replayed from the journal when this queue was opened
+    public List<JobHandle<?>> getRecoveredJobs() {
+        return recoveredJobs;
+    }
+
+    private void startLaneConsumers(Config config) {
+        int consumers = serialDispatch ? 1 : workers.size();
 
+        for (int i = 0; i < consumers; i++) {
+            laneConsumers.add(new LaneConsumer(lanes, config.priorityLanes(), workers, serialDispatch ? -1 : i,
+                    exceptionHandler, config.waitStrategy()));
+        }
+        for (LaneConsumer consumer : laneConsumers)
+            consumer.start(threadFactory, consumerDispatcher(), this::drainOverflow);
+    }
+
+    // Each consumer gets its own batcher, since it holds back the jobs that consumer has taken. Throttling comes
+    // first, so a batch only ever holds jobs that are cleared to run.
+    private JobDispatcher consumerDispatcher() {
+        JobDispatcher dispatcher;
+        if (stealingPool != null)
+            dispatcher = stealingPool::push;
+        else if (batching.enabled())
+            dispatcher = new JobBatcher(batching, this::dispatch, this::dispatchBatch);
+        else
+            dispatcher = new JobDispatcher() {
+                @Override
+                public void dispatch(Worker worker, Job job) throws InterruptedException {
+                    Queue.this.dispatch(worker, job);
+                }
+
+                @Override
+                public void dispatch(Worker worker, JobEvent event) throws InterruptedException {
+                    dispatchEvent(worker, event);
+                }
+            };
+        return throttle != null ? throttle.admitting(dispatcher) : dispatcher;
+    }
+
+    // A published job runs straight from its slot when it runs inline; a virtual thread needs a Job to carry
+    private void dispatchEvent(Worker worker, JobEvent event) throws InterruptedException {
+        Job job = event.getJob();
+        if (job != null) {
+            dispatch(worker, job);
+            return;
+        }
+        if (!event.claim())
+            return;
+
+        if (executionMode == ExecutionMode.INLINE)
+            runSlot(worker, event);
+        else
+            dispatch(worker, event.materialize());
+    }
+
+    // Holds a throttled job on the timing wheel; it goes back into the ring buffer like a retry
+    private void park(Job job, long delayNanos) {
+        timingWheel.schedule(ScheduledJob.throttled(timingWheel, job), delayNanos);
+    }
+
+    private RingBuffer<JobEvent> laneFor(Job job) {
+        return lanes.length == 1 ? lanes[0] : lanes[job.getPriority().ordinal()];
+    }
+
+    private void dispatch(Worker worker, Job job) throws InterruptedException {
+        // A thread per job would let jobs with the same key overlap, so keyed jobs keep to their worker's consumer
+        if (executionMode == ExecutionMode.INLINE || job.getPartitionKey() != null) {
+            run(worker, job);
+            return;
+        }
+        execute(() -> run(worker, job));
+    }
+
+    // A batch takes a single in-flight permit and virtual thread, however many jobs it holds
+    private void dispatchBatch(Worker worker, List<Job> jobs, BatchHandler handler) throws InterruptedException {
+        if (executionMode == ExecutionMode.INLINE) {
+            runBatch(worker, jobs, handler);
+            return;
+        }
+        execute(() -> runBatch(worker, jobs, handler));
+    }
+
+    private void execute(Execution execution) throws InterruptedException {
+        // Blocks the consumer only once maxInFlight jobs are running, which pushes back on the ring buffer
+        inFlight.acquire();
+        try {
+            executorService.execute(() -> {
                 try {
-                    Thread.sleep(backoff);
-                    backoff *= 2; // Exponential backoff
-                } catch (InterruptedException ex) {
+                    execution.run();
+                } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
-                    throw new RuntimeException("Retry interrupted for job: " + job.getKey(), ex);
+                } finally {
+                    inFlight.release();
                 }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Execution {
+
+        void run() throws InterruptedException;
+
+    }
+
+    private void run(Worker worker, Job job) throws InterruptedException {
+        if (!claim(job))
+            return;
+
+        try {
+            worker.process(job);
+        } catch (JobProcessingException e) {
+            if (job.getStatus() == JobStatus.RETRYING)
+                scheduleRetry(job);
+            else
+                logger.warn(e.getMessage(), e.getCause());
+        } finally {
+            unthrottle(job);
+            settle(job);
+        }
+    }
+
+    private void runBatch(Worker worker, List<Job> jobs, BatchHandler handler) throws InterruptedException {
+        List<Job> claimed = new ArrayList<>(jobs.size());
+        for (Job job : jobs) {
+            if (claim(job))
+                claimed.add(job);
+        }
+        if (claimed.isEmpty())
+            return;
+
+        try {
+            worker.processBatch(claimed, handler);
+        } catch (JobProcessingException e) {
+            boolean failed = false;
+            for (Job job : claimed) {
+                if (job.getStatus() == JobStatus.RETRYING)
+                    scheduleRetry(job);
+                else
+                    failed = true;
+            }
+            if (failed)
+                logger.warn(e.getMessage(), e.getCause());
+        } finally {
+            for (Job job : claimed) {
+                unthrottle(job);
+                settle(job);
             }
         }
     }
 
+    // Only a failure turns the slot into a Job, so it can be reported like any other. A published job carries no
+    // RetryPolicy, so its first failure is final.
+    private void runSlot(Worker worker, JobEvent event) throws InterruptedException {
+        if (laneStats != null)
+            laneStats[Priority.NORMAL.ordinal()].record(System.nanoTime() - event.getQueuedTime());
+
+        Job failed = worker.processSlot(event);
+        if (failed == null)
+            return;
+        logger.warn(failed.getFailure().getMessage(), failed.getFailure().getCause());
+        settle(failed);
+    }
+
+    // False if drainAndShutdown has already handed the job back
+    private boolean claim(Job job) {
+        if (!job.start(this)) {
+            unthrottle(job);
+            return false;
+        }
+        if (laneStats != null)
+            laneStats[job.getPriority().ordinal()].record(System.nanoTime() - job.getQueuedTime());
+        if (journal != null)
+            journal.started(job.getId());
+        return true;
+    }
+
+    // Frees the job's in-flight slot for the next job of its function
+    private void unthrottle(Job job) {
+        if (throttle != null)
+            throttle.finished(job);
+    }
+
+    private void settle(Job job) {
+        if (job.getStatus().isTerminal()) {
+            release(job);
+            jobStore.onTerminal(job);
+        }
+    }
+
+    // The consumer moves on immediately; the job comes back through the ring buffer once its delay expires
+    private void scheduleRetry(Job job) {
+        long delay = job.getRetryPolicy().delayFor(job.getAttempts());
+        try {
+            timingWheel.schedule(ScheduledJob.retry(timingWheel, job), TimeUnit.MILLISECONDS.toNanos(delay));
+        } catch (RejectedExecutionException e) {
+            release(job);
+            job.fail(new JobProcessingException("Retry rejected after shutdown: " + job.getKey(), e));
+        }
+    }
+
+    // Runs on the timer thread with every timer that came due on the same tick
+    private void injectDue(List<ScheduledJob> due) {
+        inject(due, false);
+        inject(due, true);
+    }
+
+    private void inject(List<ScheduledJob> due, boolean retries) {
+        List<ScheduledJob> timers = new ArrayList<>(due.size());
+        List<Job> jobs = new ArrayList<>(due.size());
+        for (ScheduledJob timer : due) {
+            if (timer.isRetry() != retries)
+                continue;
+            Job job = timer.claim();
+            if (job == null)
+                continue;
+
+            if (retries)
+                job.setStatus(JobStatus.QUEUED);
+            else
+                job.markQueued();
+            timers.add(timer);
+            jobs.add(job);
+        }
+        if (jobs.isEmpty())
+            return;
+
+        Job[] batch = jobs.toArray(new Job[0]);
+        int published = 0;
+        int count;
+        while (published < batch.length && (count = publishBatch(batch, published, !retries)) > 0)
+            published += count;
+
+        for (int i = 0; i < batch.length; i++) {
+            if (i < published) {
+                timers.get(i).injected(batch[i]);
+            } else {
+                batch[i].setStatus(timers.get(i).isThrottled() ? JobStatus.QUEUED
+                        : retries ? JobStatus.RETRYING : JobStatus.SCHEDULED);
+                timers.get(i).deferred();
+            }
+        }
+    }
+
+    // Runs the job once, delay milliseconds from now
+    public ScheduledJob schedule(Job job, long delay) {
+        if (!multiProducer)
+            throw new UnsupportedOperationException("schedule requires ProducerType.MULTI");
+        checkAccepting(job);
+
+        job.setStatus(JobStatus.SCHEDULED);
+        ScheduledJob timer = ScheduledJob.once(timingWheel, job);
+        timingWheel.schedule(timer, TimeUnit.MILLISECONDS.toNanos(delay));
+        return timer;
+    }
+
+    // Submits a fresh job every period milliseconds until the returned handle is cancelled
+    public ScheduledJob scheduleAtFixedRate(String function, String args, Callable<?> task, long initialDelay, long period) {
+        if (!multiProducer)
+            throw new UnsupportedOperationException("scheduleAtFixedRate requires ProducerType.MULTI");
+        if (period <= 0)
+            throw new IllegalArgumentException("period must be positive: " + period);
+        if (!accepting)
+            throw new RejectedExecutionException("Queue is shut down");
+
+        ScheduledJob timer = ScheduledJob.recurring(timingWheel, () -> new Job(function, args, task),
+                TimeUnit.MILLISECONDS.toNanos(period));
+        timingWheel.schedule(timer, TimeUnit.MILLISECONDS.toNanos(initialDelay));
+        return timer;
+    }
+
+    public int getInFlightJobs() {
+        return executionMode == ExecutionMode.INLINE ? 0 : maxInFlight - inFlight.availablePermits();
+    }
+
+    public List<Worker> getWorkers() {
+        return workers;
+    }
+
+    public int getWorkerCount() {
+        return workers.size();
+    }
+
+    // In PARALLEL mode the new worker gets its own consumer, which only takes sequences claimed after it joined
+    public Worker addWorker() {
+        resizeLock.lock();
+        try {
+            checkResizable();
+            Worker worker = newWorker();
+            long joinedAt = serialDispatch ? -1 : startWorkerConsumer(worker);
+            if (stealingPool != null)
+                stealingPool.add(worker);
+            swapRouting(routing.with(worker, joinedAt));
+            workers.add(worker);
+            return worker;
+        } finally {
+            resizeLock.unlock();
+        }
+    }
+
+    // Removes the most recently added worker, or returns null if it is the last one. Jobs already routed to it
+    // still run; in PARALLEL mode its consumer stops once it has passed every sequence that could be routed to it.
+    public Worker removeWorker() {
+        resizeLock.lock();
+        try {
+            checkResizable();
+            if (workers.size() <= 1)
+                return null;
+
+            Worker worker = workers.getLast();
+            long drainTo = swapRouting(routing.without(worker));
+            workers.remove(worker);
+            if (stealingPool != null)
+                stealingPool.retire(worker);
+            if (!serialDispatch) {
+                for (WorkerEventHandler consumer : workerConsumers) {
+                    if (consumer.getWorker() == worker)
+                        consumer.retireAfter(drainTo);
+                }
+            }
+            return worker;
+        } finally {
+            resizeLock.unlock();
+        }
+    }
+
+    // A producer that still stamps the old routing claimed its slot before the swap, so at or below the returned
+    // cursor. In PARALLEL mode keyed jobs stamped with the new routing wait for every consumer to get that far.
+    private long swapRouting(WorkerRouting next) {
+        routing = next;
+        long cursor = lanes[0].getCursor();
+        next.setHandoffAt(cursor);
+        // A single consumer sees every job in ring order, so there is nothing to wait for
+        if (serialDispatch)
+            next.markHandedOff();
+        return cursor;
+    }
+
+    private void checkResizable() {
+        if (laneStats != null && !serialDispatch)
+            throw new UnsupportedOperationException("Resizing with priority lanes requires DispatchMode.SERIAL");
+        // A single-producer cursor only covers published slots, so a slot claimed under the old routing can sit
+        // above the handoff bound and be skipped by both the retiring consumer and its replacement
+        if (!multiProducer && !serialDispatch)
+            throw new UnsupportedOperationException("Resizing a PARALLEL queue requires ProducerType.MULTI");
+    }
+
+    // How full the ring buffers are, from 0 to 1
+    double bufferUtilization() {
+        long size = 0;
+        long used = 0;
+        for (RingBuffer<JobEvent> lane : lanes) {
+            size += lane.getBufferSize();
+            used += lane.getBufferSize() - lane.remainingCapacity();
+        }
+        return (double) used / size;
+    }
+
+    // Free ring buffer slots across all lanes
+    long remainingCapacity() {
+        long free = 0;
+        for (RingBuffer<JobEvent> lane : lanes)
+            free += lane.remainingCapacity();
+        return free;
+    }
+
+    boolean isMultiProducer() {
+        return multiProducer;
+    }
+
+    long bufferSize() {
+        long size = 0;
+        for (RingBuffer<JobEvent> lane : lanes)
+            size += lane.getBufferSize();
+        return size;
+    }
+
+    // How long the oldest job that no consumer has picked up yet has been waiting, in nanoseconds
+    long headOfLineWait() {
+        long now = System.nanoTime();
+        long oldest = 0;
+        for (RingBuffer<JobEvent> lane : lanes) {
+            long next = lane.getMinimumGatingSequence() + 1;
+            if (next > lane.getCursor() || !lane.isAvailable(next))
+                continue;
+            // Racy read of a live slot; good enough for a scaling decision
+            oldest = Math.max(oldest, now - lane.get(next).getQueuedTime());
+        }
+        // Under work stealing the consumer hands jobs off at once, so the backlog sits in the workers' deques
+        long queuedTime = stealingPool == null ? Long.MAX_VALUE : stealingPool.oldestQueuedTime();
+        if (queuedTime != Long.MAX_VALUE)
+            oldest = Math.max(oldest, now - queuedTime);
+        return oldest;
+    }
+
+    // With deduplication, a job matching one still queued or running is not queued again; the returned handle
+    // belongs to the job it was collapsed into
+    public JobHandle<?> submit(Job job) throws RejectedExecutionException {
+        checkRetryable(job);
+        checkAccepting(job);
+        Job original = register(job);
+        if (original != null)
+            return new JobHandle<>(original);
+
+        // Jobs already waiting in the overflow queue go first, so a synchronous submit never overtakes them
+        if (overflowSize != 0) {
+            enqueueOverflow(job, null);
+        } else if (!tryPublish(job)) {
+            switch (overflow.policy()) {
+                case REJECT -> throw reject(job, new RejectedExecutionException("Ring buffer is full: " + job.getKey()));
+                case BLOCK -> submitBlocking(job);
+                case DROP_OLDEST, SPILL -> enqueueOverflow(job, null);
+            }
+        }
+
+        return new JobHandle<>(job);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> JobHandle<T> submit(String function, String args, Callable<T> task) throws RejectedExecutionException {
+        return (JobHandle<T>) submit(new Job(function, args, task));
+    }
+
+    // Never blocks the caller: the future completes once the job is published to the ring buffer
+    // (or handed to the spill handler) and fails if the overflow policy rejects or drops it.
+    public CompletableFuture<Void> submitAsync(Job job) {
+        if (!multiProducer)
+            throw new UnsupportedOperationException("submitAsync requires ProducerType.MULTI");
+        if (!accepting)
+            return CompletableFuture.failedFuture(reject(job, shutDown(job)));
+        if (register(job) != null)
+            return CompletableFuture.completedFuture(null);
+
+        if (overflowSize == 0 && tryPublish(job))
+            return CompletableFuture.completedFuture(null);
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        enqueueOverflow(job, future);
+        return future;
+    }
+
+    // Submits without allocating: the translator writes the job into its ring buffer slot with JobEvent.setTask, and
+    // no Job exists unless one is needed later. Published jobs are not tracked in the job store, go to the NORMAL
+    // lane, and when the ring buffer is full this returns false instead of applying the overflow policy.
+    public <A> boolean publish(EventTranslatorOneArg<JobEvent, A> translator, A arg) {
+        RingBuffer<JobEvent> ringBuffer = publishLane();
+        long sequence = claimSlot(ringBuffer);
+        if (sequence < 0)
+            return false;
+
+        JobEvent event = ringBuffer.get(sequence);
+        try {
+            event.clearForPublish();
+            translator.translateTo(event, sequence, arg);
+        } finally {
+            publishSlot(ringBuffer, sequence, event);
+        }
+        return true;
+    }
+
+    public <A, B> boolean publish(EventTranslatorTwoArg<JobEvent, A, B> translator, A argA, B argB) {
+        RingBuffer<JobEvent> ringBuffer = publishLane();
+        long sequence = claimSlot(ringBuffer);
+        if (sequence < 0)
+            return false;
+
+        JobEvent event = ringBuffer.get(sequence);
+        try {
+            event.clearForPublish();
+            translator.translateTo(event, sequence, argA, argB);
+        } finally {
+            publishSlot(ringBuffer, sequence, event);
+        }
+        return true;
+    }
+
+    private RingBuffer<JobEvent> publishLane() {
+        return lanes.length == 1 ? lanes[0] : lanes[Priority.NORMAL.ordinal()];
+    }
+
+    // The journal and the deduplication index both need a Job before the slot is claimed
+    private long claimSlot(RingBuffer<JobEvent> ringBuffer) {
+        if (journal != null || jobIndex != null)
+            throw new UnsupportedOperationException("publish does not support durability or deduplication; use submit");
+        if (!accepting)
+            throw new RejectedExecutionException("Queue is shut down");
+
+        try {
+            return ringBuffer.tryNext();
+        } catch (InsufficientCapacityException e) {
+            BufferSaturatedEvent.emit(laneStats == null ? null : Priority.NORMAL, ringBuffer.getBufferSize(), 1);
+            rejectedJobs.increment();
+            return -1;
+        }
+    }
+
+    private void publishSlot(RingBuffer<JobEvent> ringBuffer, long sequence, JobEvent event) {
+        event.published(routing, System.nanoTime());
+        ringBuffer.publish(sequence);
+        queuedJobs.increment();
+    }
+
+    private boolean tryPublish(Job job) {
+        return tryPublish(job, true);
+    }
+
+    // Returns the job this one was collapsed into, or null if it is to be queued
+    private Job register(Job job) {
+        if (jobIndex == null)
+            return null;
+
+        Job original = jobIndex.register(job);
+        if (original != null) {
+            coalescedJobs.increment();
+            job.follow(original);
+        }
+        return original;
+    }
+
+    private void release(Job job) {
+        if (jobIndex != null)
+            jobIndex.release(job);
+    }
+
+    // Retries are published from the timer thread, which a single-producer sequencer cannot allow, so a job that
+    // asks for them is refused rather than quietly run once
+    private void checkRetryable(Job job) {
+        if (!multiProducer && job.getRetryPolicy().maxRetries() > 0)
+            throw new UnsupportedOperationException("Job retries require ProducerType.MULTI: " + job.getKey());
+    }
+
+    private void checkAccepting(Job job) {
+        if (!accepting)
+            throw reject(job, shutDown(job));
+    }
+
+    private static RejectedExecutionException shutDown(Job job) {
+        return new RejectedExecutionException("Queue is shut down: " + job.getKey());
+    }
+
+    private boolean tryPublish(Job job, boolean newJob) {
+        if (newJob && journal != null && !job.journaled)
+            awaitDurable(journal(job));
+
+        RingBuffer<JobEvent> ringBuffer = laneFor(job);
+        long sequence;
+        try {
+            sequence = ringBuffer.tryNext();
+        } catch (InsufficientCapacityException e) {
+            BufferSaturatedEvent.emit(laneStats == null ? null : job.getPriority(), ringBuffer.getBufferSize(), 1);
+            return false;
+        }
+
+        // Tracked before publishing so a fast consumer can never report it terminal first
+        jobStore.track(job);
+        JobEvent event = ringBuffer.get(sequence);
+        event.setJob(job);
+        event.setRouting(routing);
+        ringBuffer.publish(sequence);
+        if (newJob)
+            queuedJobs.increment();
+        return true;
+    }
+
+    private void submitBlocking(Job job) {
+        long started = System.nanoTime();
+        long timeout = TimeUnit.MILLISECONDS.toNanos(overflow.blockTimeout());
+        long parkNanos = 1_000;
+
+        while (!tryPublish(job)) {
+            if (System.nanoTime() - started >= timeout) {
+                throw reject(job, new RejectedExecutionException("Timed out waiting for a free slot: " + job.getKey()));
+            }
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Submit interrupted for job: " + job.getKey());
+            }
+
+            LockSupport.parkNanos(parkNanos);
+            parkNanos = Math.min(parkNanos * 2, TimeUnit.MILLISECONDS.toNanos(1));
+            checkAccepting(job);
+        }
+    }
+
+    private void enqueueOverflow(Job job, CompletableFuture<Void> future) {
+        PendingSubmit dropped = null;
+        boolean accepted = true;
+        boolean spilled = false;
+
+        overflowLock.lock();
+        try {
+            if (overflowQueue.size() >= overflow.capacity()) {
+                switch (overflow.policy()) {
+                    case REJECT, BLOCK -> accepted = false;
+                    case DROP_OLDEST -> dropped = overflowQueue.pollFirst();
+                    case SPILL -> spilled = true;
+                }
+            }
+            if (accepted && !spilled) {
+                overflowQueue.addLast(new PendingSubmit(job, future));
+                overflowSize = overflowQueue.size();
+            }
+        } finally {
+            overflowLock.unlock();
+        }
+
+        if (dropped != null) {
+            RejectedExecutionException e = reject(dropped.job(),
+                    new RejectedExecutionException("Dropped from the overflow queue: " + dropped.job().getKey()));
+            if (dropped.future() != null)
+                dropped.future().completeExceptionally(e);
+        }
+        if (spilled) {
+            release(job);
+            overflow.spillHandler().accept(job);
+            if (future != null)
+                future.complete(null);
+        } else if (!accepted) {
+            RejectedExecutionException e = reject(job, new RejectedExecutionException("Overflow queue is full: " + job.getKey()));
+            if (future == null)
+                throw e;
+            future.completeExceptionally(e);
+        }
+
+        // Slots may have been freed while the job was being enqueued
+        drainOverflow();
+    }
+
+    private long journal(Job job) {
+        long position = journal.submitted(job.getId(), job.getFunction(), job.getArgs(), job.getPriority(),
+                job.getPartitionKey());
+        job.journaled = true;
+        return position;
+    }
+
+    private void awaitDurable(long position) {
+        if (awaitSync)
+            journal.awaitDurable(position);
+    }
+
+    private void journalTerminal(Job job, JobStatus status) {
+        if (status == JobStatus.COMPLETED)
+            journal.completed(job.getId());
+        else
+            journal.failed(job.getId());
+    }
+
+    // The job never reached the ring buffer, so it must not come back on restart
+    private void unjournal(Job job) {
+        if (journal != null && job.journaled) {
+            journal.rejected(job.getId());
+            job.journaled = false;
+        }
+    }
+
+    // A rejected job never runs, so the job store lets go of it in case it was tracked before
+    private RejectedExecutionException reject(Job job, RejectedExecutionException e) {
+        unjournal(job);
+        release(job);
+        jobStore.untrack(job);
+        rejectedJobs.increment();
+        JobRejectedEvent.emit(job, e.getMessage());
+        job.reject(e);
+        return e;
+    }
+
+    // Called by consumers after each batch and by producers after enqueueing, so pending jobs
+    // move into the ring buffer as soon as slots free up without any thread waiting on them.
+    private void drainOverflow() {
+        if (overflowSize == 0 || !multiProducer)
+            return;
+
+        List<CompletableFuture<Void>> published = null;
+        overflowLock.lock();
+        try {
+            PendingSubmit next;
+            while ((next = overflowQueue.peekFirst()) != null && tryPublish(next.job())) {
+                overflowQueue.pollFirst();
+                if (next.future() != null) {
+                    if (published == null)
+                        published = new ArrayList<>();
+                    published.add(next.future());
+                }
+            }
+            overflowSize = overflowQueue.size();
+        } finally {
+            overflowLock.unlock();
+        }
+
+        if (published != null)
+            published.forEach(future -> future.complete(null));
+    }
+
+    private record PendingSubmit(Job job, CompletableFuture<Void> future) {
+    }
+
+    public BatchSubmitResult submitAll(Collection<Job> jobs) {
+        return submit(jobs.toArray(new Job[0]));
+    }
+
+    // Claims a contiguous range of slots per attempt and applies the overflow policy like a single submit, except
+    // that jobs REJECT or BLOCK could not place are returned in submission order instead of being thrown.
+    public BatchSubmitResult submit(Job[] jobs) {
+        for (Job job : jobs)
+            checkRetryable(job);
+
+        // Collapsed duplicates count as accepted
+        int coalesced = 0;
+        if (jobIndex != null && accepting) {
+            List<Job> unique = new ArrayList<>(jobs.length);
+            for (Job job : jobs) {
+                if (register(job) == null)
+                    unique.add(job);
+            }
+            coalesced = jobs.length - unique.size();
+            jobs = unique.toArray(new Job[0]);
+        }
+
+        // Jobs already waiting in the overflow queue go first, so a batch never overtakes them either
+        int accepted = overflowSize == 0 ? publishBatches(jobs) : 0;
+        while (accepted < jobs.length && accepting && offerOverflow(jobs[accepted]))
+            accepted++;
+
+        for (int i = accepted; i < jobs.length; i++) {
+            unjournal(jobs[i]);
+            release(jobs[i]);
+        }
+        return new BatchSubmitResult(accepted + coalesced, List.of(Arrays.copyOfRange(jobs, accepted, jobs.length)));
+    }
+
+    // Under BLOCK keeps claiming until the block timeout runs out; under every other policy gives up on a full buffer
+    private int publishBatches(Job[] jobs) {
+        long started = System.nanoTime();
+        long timeout = overflow.policy() == OverflowPolicy.BLOCK
+                ? TimeUnit.MILLISECONDS.toNanos(overflow.blockTimeout())
+                : 0;
+        long parkNanos = 1_000;
+        int accepted = 0;
+
+        while (accepted < jobs.length && accepting) {
+            int published = publishBatch(jobs, accepted, true);
+            if (published > 0) {
+                accepted += published;
+                continue;
+            }
+            if (System.nanoTime() - started >= timeout || Thread.currentThread().isInterrupted())
+                break;
+            LockSupport.parkNanos(parkNanos);
+            parkNanos = Math.min(parkNanos * 2, TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return accepted;
+    }
+
+    // A batch job that missed the ring buffer: DROP_OLDEST and SPILL take it like a single submit, while REJECT and
+    // BLOCK only queue it behind jobs already waiting, and otherwise leave it to the caller
+    private boolean offerOverflow(Job job) {
+        if (overflow.policy() == OverflowPolicy.DROP_OLDEST || overflow.policy() == OverflowPolicy.SPILL) {
+            enqueueOverflow(job, null);
+            return true;
+        }
+
+        overflowLock.lock();
+        try {
+            if (overflowSize == 0 || overflowQueue.size() >= overflow.capacity())
+                return false;
+            overflowQueue.addLast(new PendingSubmit(job, null));
+            overflowSize = overflowQueue.size();
+        } finally {
+            overflowLock.unlock();
+        }
+        drainOverflow();
+        return true;
+    }
+
+    // With priority lanes a claim covers the run of consecutive jobs that share the first job's lane
+    private int publishBatch(Job[] jobs, int from, boolean newJobs) {
+        RingBuffer<JobEvent> ringBuffer = laneFor(jobs[from]);
+        int end = from + 1;
+        while (end < jobs.length && laneFor(jobs[end]) == ringBuffer)
+            end++;
+
+        int count = Math.min(end - from, ringBuffer.getBufferSize());
+        if (newJobs && journal != null) {
+            // One force covers the whole batch
+            long position = 0;
+            for (int i = from; i < from + count; i++) {
+                if (!jobs[i].journaled)
+                    position = journal(jobs[i]);
+            }
+            if (position != 0)
+                awaitDurable(position);
+        }
+
+        long hi;
+        try {
+            hi = ringBuffer.tryNext(count);
+        } catch (InsufficientCapacityException e) {
+            BufferSaturatedEvent.emit(laneStats == null ? null : jobs[from].getPriority(), ringBuffer.getBufferSize(), count);
+            // Take whatever part of the batch still fits
+            count = (int) Math.min(count, ringBuffer.remainingCapacity());
+            if (count == 0)
+                return 0;
+
+            try {
+                hi = ringBuffer.tryNext(count);
+            } catch (InsufficientCapacityException ex) {
+                return 0;
+            }
+        }
+
+        long lo = hi - count + 1;
+        WorkerRouting current = routing;
+        for (int i = 0; i < count; i++) {
+            Job job = jobs[from + i];
+            jobStore.track(job);
+            JobEvent event = ringBuffer.get(lo + i);
+            event.setJob(job);
+            event.setRouting(current);
+        }
+        ringBuffer.publish(lo, hi);
+        if (newJobs)
+            queuedJobs.add(count);
+
+        return count;
+    }
+
     public List<CapturedJobMetrics> captureJobMetrics() {
-        return jobMap.values().stream()
-                .map(job -> new CapturedJobMetrics(
-                        job.getKey(),
-                        job.getFunction(),
-                        job.getArgs(),
-                        job.getQueuedTime(),
-                        job.getStartedTime(),
-                        job.getCompletedTime(),
-                        job.getStatus()))
-                .collect(Collectors.toList());
+        List<CapturedJobMetrics> metrics = new ArrayList<>(jobStore.size());
+        jobStore.forEach(job -> metrics.add(captureJobMetrics(job)));
+        return metrics;
+    }
+
+    public CapturedJobMetrics captureJobMetrics(String key) {
+        Job job = jobStore.get(key);
+        return job == null ? null : captureJobMetrics(job);
+    }
+
+    private static CapturedJobMetrics captureJobMetrics(Job job) {
+        return new CapturedJobMetrics(
+                job.getKey(),
+                job.getFunction(),
+                job.getArgs(),
+                job.getQueuedTime(),
+                job.getStartedTime(),
+                job.getCompletedTime(),
+                job.getStatus());
+    }
+
+    public JobStore getJobStore() {
+        return jobStore;
     }
 
     public List<CapturedWorkerMetrics> captureWorkerMetrics() {
@@ -106,16 +1101,193 @@ public class Queue {
                 .collect(Collectors.toList());
     }
 
+    public List<CapturedFunctionMetrics> captureFunctionMetrics() {
+        return functionMetrics.capture();
+    }
+
+    public CapturedFunctionMetrics captureFunctionMetrics(String function) {
+        return functionMetrics.capture(function);
+    }
+
+    // One entry per throttled function
+    public List<CapturedLimiterMetrics> captureLimiterMetrics() {
+        return throttle == null ? List.of() : throttle.capture();
+    }
+
+    // Every counter is read once, in the reverse of the order a job moves through them, so a snapshot
+    // taken under load never reports more jobs finished than were ever queued
     public CapturedQueueMetrics captureQueueMetrics() {
-        long activeWorkers = workers.size();
-        long completedJobs = workers.stream().mapToLong(Worker::getCompletedJobs).sum();
-        long failedJobs = workers.stream().mapToLong(Worker::getFailedJobs).sum();
-        long scheduledJobs = queuedJobs.get() - completedJobs - failedJobs;
+        long completed = totals.completed.sum();
+        long retried = totals.retried.sum();
+        long failed = totals.failed.sum();
+        long scheduled = timingWheel.pendingTimers();
+        long overflow = overflowSize;
+        long rejected = rejectedJobs.sum();
+        long coalesced = coalescedJobs.sum();
+        long queued = queuedJobs.sum();
+
+        return new CapturedQueueMetrics(workers.size(), queued, completed, retried, failed, scheduled, overflow, rejected,
+                coalesced, captureLaneMetrics());
+    }
+
+    // Counterpart of captureQueueMetrics for a MetricsReporter, read in the same order. Only allocates to grow the
+    // worker slots when the queue has gained workers since the slot was last written
+    void sample(MetricsSample sample) {
+        long completed = totals.completed.sum();
+        long retried = totals.retried.sum();
+        long failed = totals.failed.sum();
+        long bufferSize = 0;
+        long bufferUsed = 0;
+        for (RingBuffer<JobEvent> lane : lanes) {
+            bufferSize += lane.getBufferSize();
+            bufferUsed += lane.getBufferSize() - lane.remainingCapacity();
+        }
+
+        int sampled = 0;
+        for (Worker worker : workers)
+            worker.sample(sample.workerSlot(sampled++));
 
-        return new CapturedQueueMetrics(activeWorkers, queuedJobs.get(), scheduledJobs);
+        sample.timestamp = System.currentTimeMillis();
+        sample.workers = sampled;
+        sample.completed = completed;
+        sample.retried = retried;
+        sample.failed = failed;
+        sample.inFlight = getInFlightJobs();
+        sample.bufferSize = bufferSize;
+        sample.bufferUsed = bufferUsed;
+        sample.scheduled = timingWheel.pendingTimers();
+        sample.overflow = overflowSize;
+        sample.rejected = rejectedJobs.sum();
+        sample.coalesced = coalescedJobs.sum();
+        sample.queued = queuedJobs.sum();
     }
 
+    // Empty unless priority lanes are enabled
+    public List<CapturedLaneMetrics> captureLaneMetrics() {
+        if (laneStats == null)
+            return List.of();
+
+        List<CapturedLaneMetrics> metrics = new ArrayList<>(lanes.length);
+        for (Priority priority : Priority.values()) {
+            RingBuffer<JobEvent> lane = lanes[priority.ordinal()];
+            long depth = lane.getBufferSize() - lane.remainingCapacity();
+            metrics.add(laneStats[priority.ordinal()].capture(priority, depth));
+        }
+        return metrics;
+    }
+
+    // Stops at once. Queued jobs stay in the journal, if there is one, and run again when it is reopened.
     public void shutdown() throws InterruptedException, TimeoutException {
+        accepting = false;
+        if (autoScaler != null)
+            autoScaler.stop();
+        haltConsumers();
+        timingWheel.stop().forEach(ScheduledJob::cancel);
+        close();
+    }
+
+    // Stops taking submissions, waits up to timeout milliseconds for every accepted job to finish, then shuts down.
+    // Returns, oldest first, the jobs that never started: still in the ring buffer, a worker's deque or the overflow
+    // queue, or waiting on a retry or schedule timer. They are taken out of the journal so that re-queueing them
+    // elsewhere cannot run them twice, and out of the job store, where they would never reach a terminal state.
+    // A job still running at the deadline is left to finish on its consumer.
+    public List<Job> drainAndShutdown(long timeout) throws InterruptedException, TimeoutException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        accepting = false;
+        if (autoScaler != null)
+            autoScaler.stop();
+        while (!isDrained() && System.nanoTime() - deadline < 0)
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+
+        // Timers go first so none of them can inject a job behind the scan of the ring buffer
+        List<Job> unrun = new ArrayList<>();
+        for (ScheduledJob timer : timingWheel.stop()) {
+            Job job = timer.getJob();
+            if (timer.isRecurring() || job == null) {
+                timer.cancel();
+            } else {
+                job.withdrawn(this);
+                unrun.add(job);
+            }
+        }
+        haltConsumers();
+        withdrawQueued(unrun);
+
+        unrun.sort((a, b) -> Long.compare(a.getQueuedTime() - b.getQueuedTime(), 0));
+        unrun.forEach(job -> {
+            unjournal(job);
+            release(job);
+            unthrottle(job);
+            jobStore.untrack(job);
+        });
+        close();
+        return unrun;
+    }
+
+    // Read in the order a job moves through them, so one in transit between two is always seen in the second
+    private boolean isDrained() {
+        if (overflowSize != 0)
+            return false;
+        for (RingBuffer<JobEvent> lane : lanes) {
+            if (lane.getMinimumGatingSequence() < lane.getCursor())
+                return false;
+        }
+        return (stealingPool == null || stealingPool.isIdle()) && getInFlightJobs() == 0;
+    }
+
+    // A halted consumer may still finish the batch it is in; withdrawing a job first makes it skip that one
+    private void withdrawQueued(List<Job> unrun) {
+        List<Job> candidates = new ArrayList<>();
+        if (stealingPool != null)
+            stealingPool.drainTo(candidates);
+        if (throttle != null)
+            throttle.drainTo(candidates);
+        for (RingBuffer<JobEvent> lane : lanes) {
+            long cursor = lane.getCursor();
+            for (long sequence = lane.getMinimumGatingSequence() + 1; sequence <= cursor; sequence++) {
+                if (!lane.isAvailable(sequence))
+                    continue;
+                JobEvent event = lane.get(sequence);
+                Job job = event.getJob();
+                if (job == null && event.claim())
+                    job = event.materialize();
+                if (job != null)
+                    candidates.add(job);
+            }
+        }
+
+        overflowLock.lock();
+        try {
+            PendingSubmit pending;
+            while ((pending = overflowQueue.pollFirst()) != null) {
+                candidates.add(pending.job());
+                if (pending.future() != null)
+                    pending.future().completeExceptionally(shutDown(pending.job()));
+            }
+            overflowSize = 0;
+        } finally {
+            overflowLock.unlock();
+        }
+
+        for (Job job : candidates) {
+            if (job != null && job.withdraw(this))
+                unrun.add(job);
+        }
+    }
+
+    // Stop the consumers too; a spinning wait strategy would otherwise keep burning CPU
+    private void haltConsumers() {
+        if (disruptor != null)
+            disruptor.halt();
+        workerConsumers.forEach(consumer -> consumer.getProcessor().halt());
+        laneConsumers.forEach(LaneConsumer::halt);
+        if (stealingPool != null)
+            stealingPool.stop();
+    }
+
+    private void close() throws InterruptedException, TimeoutException {
+        if (journal != null)
+            journal.close();
         executorService.shutdownNow();
         if (!executorService.awaitTermination(5, TimeUnit.SECONDS))
             throw new TimeoutException("Executor service did not terminate in the expected time");
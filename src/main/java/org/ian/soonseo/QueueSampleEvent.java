@@ -0,0 +1,56 @@
+package org.ian.soonseo;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// Committed by a MetricsReporter for each sample, so recordings show throughput and saturation over time
+@Name("org.ian.soonseo.QueueSample")
+@Label("Queue Sample")
+@Category("Soonseo")
+@StackTrace(false)
+final class QueueSampleEvent extends Event {
+
+    @Label("Queued")
+    long queued;
+
+    @Label("Completed")
+    long completed;
+
+    @Label("Failed")
+    long failed;
+
+    @Label("Rejected")
+    long rejected;
+
+    @Label("Coalesced")
+    long coalesced;
+
+    @Label("Buffer Used")
+    long bufferUsed;
+
+    @Label("Buffer Size")
+    long bufferSize;
+
+    @Label("In Flight")
+    long inFlight;
+
+    static void emit(MetricsSample sample) {
+        QueueSampleEvent event = new QueueSampleEvent();
+        if (!event.shouldCommit())
+            return;
+
+        event.queued = sample.queued();
+        event.completed = sample.completed();
+        event.failed = sample.failed();
+        event.rejected = sample.rejected();
+        event.coalesced = sample.coalesced();
+        event.bufferUsed = sample.bufferUsed();
+        event.bufferSize = sample.bufferSize();
+        event.inFlight = sample.inFlight();
+        event.commit();
+    }
+
+}
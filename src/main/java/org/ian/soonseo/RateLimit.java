@@ -0,0 +1,34 @@
+package org.ian.soonseo;
+
+// Limits for one function: at most permitsPerSecond jobs start per second on average, with up to burst of them
+// back to back after a quiet spell, and at most maxInFlight run at once. A zero leaves that limit off.
+public record RateLimit(double permitsPerSecond, int burst, int maxInFlight) {
+
+    public RateLimit {
+        if (permitsPerSecond < 0)
+            throw new IllegalArgumentException("permitsPerSecond must not be negative: " + permitsPerSecond);
+        if (burst < 1)
+            throw new IllegalArgumentException("burst must be positive: " + burst);
+        if (maxInFlight < 0)
+            throw new IllegalArgumentException("maxInFlight must not be negative: " + maxInFlight);
+        if (permitsPerSecond == 0 && maxInFlight == 0)
+            throw new IllegalArgumentException("A rate limit needs a rate, a concurrency cap or both");
+    }
+
+    public static RateLimit perSecond(double permitsPerSecond) {
+        return new RateLimit(permitsPerSecond, 1, 0);
+    }
+
+    public static RateLimit maxInFlight(int maxInFlight) {
+        return new RateLimit(0, 1, maxInFlight);
+    }
+
+    public RateLimit withBurst(int burst) {
+        return new RateLimit(permitsPerSecond, burst, maxInFlight);
+    }
+
+    public RateLimit withMaxInFlight(int maxInFlight) {
+        return new RateLimit(permitsPerSecond, burst, maxInFlight);
+    }
+
+}
@@ -0,0 +1,43 @@
+package org.ian.soonseo;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Execution retries for a job that throws: retry n waits min(maxDelay, initialDelay * 2^(n-1)) milliseconds,
+// shortened by up to jitter (0..1) of that so jobs that failed together do not retry together.
+public record RetryPolicy(int maxRetries, long initialDelay, long maxDelay, double jitter) {
+
+    private static final RetryPolicy NONE = new RetryPolicy(0, 0, 0, 0.0);
+
+    public RetryPolicy {
+        if (maxRetries < 0)
+            throw new IllegalArgumentException("maxRetries must not be negative: " + maxRetries);
+        if (initialDelay < 0 || maxDelay < initialDelay)
+            throw new IllegalArgumentException("Invalid delays: " + initialDelay + ", " + maxDelay);
+        if (jitter < 0.0 || jitter > 1.0)
+            throw new IllegalArgumentException("jitter must be between 0 and 1: " + jitter);
+    }
+
+    public static RetryPolicy none() {
+        return NONE;
+    }
+
+    public static RetryPolicy exponential(int maxRetries, long initialDelay, long maxDelay) {
+        return new RetryPolicy(maxRetries, initialDelay, maxDelay, 0.2);
+    }
+
+    public RetryPolicy withJitter(double jitter) {
+        return new RetryPolicy(maxRetries, initialDelay, maxDelay, jitter);
+    }
+
+    public long delayFor(int retry) {
+        int shift = Math.min(retry - 1, 62);
+        long delay = initialDelay << shift;
+        if (delay < initialDelay || delay > maxDelay) // also catches overflow
+            delay = maxDelay;
+
+        if (jitter == 0.0 || delay == 0)
+            return delay;
+        return delay - (long) (delay * jitter * ThreadLocalRandom.current().nextDouble());
+    }
+
+}
@@ -0,0 +1,125 @@
+package org.ian.soonseo;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Supplier;
+
+// A pending timer on the queue's timing wheel. Doubles as the wheel's list node, so scheduling
+// allocates nothing beyond the handle and cancelling is a CAS plus an unlink on the timer thread.
+public final class ScheduledJob {
+
+    private static final int WAITING = 0;
+    private static final int CANCELLED = 1;
+    private static final int FIRED = 2;
+
+    private static final AtomicIntegerFieldUpdater<ScheduledJob> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(ScheduledJob.class, "state");
+
+    private final TimingWheel wheel;
+    private final Supplier<Job> factory;
+    private final long period;
+    private final boolean retry;
+    private final boolean throttled;
+    private volatile Job job;
+    private volatile int state;
+
+    // Owned by the timer thread
+    long deadline;
+    long remainingRounds;
+    ScheduledJob prev;
+    ScheduledJob next;
+    TimingWheel.Bucket bucket;
+
+    private ScheduledJob(TimingWheel wheel, Job job, Supplier<Job> factory, long period, boolean retry,
+                         boolean throttled) {
+        this.wheel = wheel;
+        this.job = job;
+        this.factory = factory;
+        this.period = period;
+        this.retry = retry;
+        this.throttled = throttled;
+    }
+
+    static ScheduledJob once(TimingWheel wheel, Job job) {
+        return new ScheduledJob(wheel, job, null, 0, false, false);
+    }
+
+    static ScheduledJob retry(TimingWheel wheel, Job job) {
+        return new ScheduledJob(wheel, job, null, 0, true, false);
+    }
+
+    // A job that was already accepted and is only held back by its function's rate limit; it is published like a
+    // retry but stays QUEUED throughout
+    static ScheduledJob throttled(TimingWheel wheel, Job job) {
+        return new ScheduledJob(wheel, job, null, 0, true, true);
+    }
+
+    static ScheduledJob recurring(TimingWheel wheel, Supplier<Job> factory, long periodNanos) {
+        return new ScheduledJob(wheel, null, factory, periodNanos, false, false);
+    }
+
+    // The job that will run next, or for recurring schedules the one that ran last
+    public Job getJob() { return job; }
+
+    public JobHandle<?> getHandle() {
+        Job current = job;
+        return current == null ? null : new JobHandle<>(current);
+    }
+
+    public boolean isRecurring() { return factory != null; }
+
+    public boolean isCancelled() { return state == CANCELLED; }
+
+    public boolean isDone() { return state != WAITING; }
+
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(Math.max(deadline - wheel.now(), 0), TimeUnit.NANOSECONDS);
+    }
+
+    // Returns false if the job was already injected into the ring buffer or cancelled before
+    public boolean cancel() {
+        if (!STATE.compareAndSet(this, WAITING, CANCELLED))
+            return false;
+
+        wheel.cancelled(this);
+        Job current = job;
+        if (current != null && factory == null)
+            current.reject(new CancellationException("Scheduled job cancelled: " + current.getKey()));
+        return true;
+    }
+
+    boolean isRetry() { return retry; }
+
+    boolean isThrottled() { return throttled; }
+
+    // Called on the timer thread when the timer comes due; returns the job to publish, or null if it was cancelled
+    Job claim() {
+        if (factory == null) {
+            if (!STATE.compareAndSet(this, WAITING, FIRED))
+                return null;
+            return job;
+        }
+
+        return state == WAITING ? factory.get() : null;
+    }
+
+    void injected(Job published) {
+        if (factory == null) {
+            wheel.fired();
+            return;
+        }
+
+        job = published;
+        if (state == WAITING)
+            wheel.rearm(this, Math.max(deadline + period, wheel.now()));
+    }
+
+    // The ring buffer had no room; try again on the next tick
+    void deferred() {
+        if (factory == null)
+            state = WAITING;
+        wheel.rearm(this, wheel.now() + TimingWheel.TICK_NANOS);
+    }
+
+}
@@ -0,0 +1,37 @@
+package org.ian.soonseo;
+
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.Sequence;
+
+// Single consumer that runs every job itself, assigning them to workers round-robin, or by partition key.
+class SerialEventHandler implements EventHandler<JobEvent> {
+
+    private final JobDispatcher dispatcher;
+    private final Runnable onBatchEnd;
+    private Sequence sequenceCallback;
+
+    SerialEventHandler(JobDispatcher dispatcher, Runnable onBatchEnd) {
+        this.dispatcher = dispatcher;
+        this.onBatchEnd = onBatchEnd;
+    }
+
+    @Override
+    public void setSequenceCallback(Sequence sequenceCallback) {
+        this.sequenceCallback = sequenceCallback;
+    }
+
+    @Override
+    public void onEvent(JobEvent event, long sequence, boolean endOfBatch) throws Exception {
+        dispatcher.dispatch(event.getRouting().owner(sequence, event.getPartitionKey()), event);
+
+        if (endOfBatch) {
+            try {
+                dispatcher.flush();
+            } finally {
+                sequenceCallback.set(sequence);
+                onBatchEnd.run();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,10 @@
+package org.ian.soonseo;
+
+// The work of a job written straight into a ring buffer slot by Queue.publish. One instance serves every job of
+// its function and the per-job data arrives as arguments, so nothing is captured or allocated per job.
+@FunctionalInterface
+public interface SlotTask<P> {
+
+    Object run(P payload, long value) throws Exception;
+
+}
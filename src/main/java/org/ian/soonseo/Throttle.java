@@ -0,0 +1,198 @@
+package org.ian.soonseo;
+
+import org.ian.soonseo.metrics.CapturedLimiterMetrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Enforces a queue's Throttling between its consumers and whatever runs the jobs. Admission never blocks:
+//  - A job over its function's rate reserves the next free permit and is parked on the timing wheel until then,
+//    so a backlog of throttled jobs comes back one permit apart instead of all retrying on the same tick.
+//  - A job over its function's in-flight cap waits off the ring buffer until a running job of that function
+//    finishes and hands the freed slot on to it.
+final class Throttle {
+
+    @FunctionalInterface
+    interface Parker {
+
+        void park(Job job, long delayNanos);
+
+    }
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final Map<String, Limiter> limiters;
+    private final Parker parker;
+
+    Throttle(Throttling throttling, Parker parker) {
+        Map<String, Limiter> limiters = new HashMap<>();
+        throttling.limits().forEach((function, limit) -> limiters.put(function, new Limiter(function, limit)));
+        this.limiters = Map.copyOf(limiters);
+        this.parker = parker;
+    }
+
+    // Wraps a consumer's dispatcher so only admitted jobs reach it
+    JobDispatcher admitting(JobDispatcher next) {
+        return new JobDispatcher() {
+            @Override
+            public void dispatch(Worker worker, Job job) throws Exception {
+                if (admit(job))
+                    next.dispatch(worker, job);
+            }
+
+            @Override
+            public void flush() throws Exception {
+                next.flush();
+            }
+        };
+    }
+
+    // False if the job was parked; it comes back through the ring buffer and is admitted again then
+    boolean admit(Job job) {
+        Limiter limiter = limiters.get(job.getFunction());
+        if (limiter == null)
+            return true;
+        if (job.throttled) {
+            job.throttled = false;
+            limiter.parked.decrementAndGet();
+        }
+
+        // A job that already waited out its rate keeps the permit it reserved while it waits for a slot
+        if (limiter.interval > 0 && !job.rateCleared) {
+            long delay = limiter.reserve(System.nanoTime());
+            if (delay > 0) {
+                job.rateCleared = true;
+                park(limiter, job, delay);
+                return false;
+            }
+        }
+
+        if (limiter.maxInFlight > 0) {
+            if (!limiter.tryStart()) {
+                job.rateCleared = true;
+                limiter.waiting.add(job);
+                limiter.parked.incrementAndGet();
+                limiter.throttled.increment();
+                job.throttled = true;
+                // The last running job may have finished before this one was queued behind it
+                if (limiter.inFlight.get() < limiter.maxInFlight)
+                    wakeOne(limiter);
+                return false;
+            }
+            job.heldSlot = limiter;
+        }
+        job.rateCleared = false;
+        return true;
+    }
+
+    // Called once an admitted job has run, or will never run
+    void finished(Job job) {
+        Limiter limiter = job.heldSlot;
+        if (limiter == null)
+            return;
+
+        job.heldSlot = null;
+        limiter.inFlight.decrementAndGet();
+        wakeOne(limiter);
+    }
+
+    // Jobs waiting for an in-flight slot; jobs parked on their rate are on the timing wheel
+    void drainTo(List<Job> jobs) {
+        for (Limiter limiter : limiters.values()) {
+            Job job;
+            while ((job = limiter.waiting.poll()) != null)
+                jobs.add(job);
+        }
+    }
+
+    List<CapturedLimiterMetrics> capture() {
+        List<CapturedLimiterMetrics> metrics = new ArrayList<>(limiters.size());
+        long now = System.nanoTime();
+        for (Limiter limiter : limiters.values())
+            metrics.add(limiter.capture(now));
+        return metrics;
+    }
+
+    private void park(Limiter limiter, Job job, long delayNanos) {
+        limiter.parked.incrementAndGet();
+        limiter.throttled.increment();
+        job.throttled = true;
+        parker.park(job, delayNanos);
+    }
+
+    private void wakeOne(Limiter limiter) {
+        Job job = limiter.waiting.poll();
+        if (job == null)
+            return;
+
+        try {
+            parker.park(job, 0);
+        } catch (RejectedExecutionException e) {
+            // Shutting down: leave it where drainTo finds it
+            limiter.waiting.add(job);
+        }
+    }
+
+    // The rate is a virtual scheduling clock (GCRA): each permit moves nextFree on by one interval, and a job may
+    // start once nextFree is no more than tolerance ahead of now. That is a token bucket of burst tokens, kept in
+    // one CAS-updated long.
+    static final class Limiter {
+
+        private final String function;
+        private final long interval;
+        private final long tolerance;
+        private final int maxInFlight;
+        private final AtomicLong nextFree;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final ConcurrentLinkedQueue<Job> waiting = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger parked = new AtomicInteger();
+        private final LongAdder throttled = new LongAdder();
+
+        private Limiter(String function, RateLimit limit) {
+            this.function = function;
+            this.interval = limit.permitsPerSecond() == 0 ? 0 : Math.max(1, (long) (NANOS_PER_SECOND / limit.permitsPerSecond()));
+            this.tolerance = interval * (limit.burst() - 1);
+            this.maxInFlight = limit.maxInFlight();
+            this.nextFree = new AtomicLong(System.nanoTime());
+        }
+
+        // Takes the next permit and returns how long until it may be used
+        private long reserve(long now) {
+            while (true) {
+                long current = nextFree.get();
+                long start = current - now > 0 ? current : now;
+                if (nextFree.compareAndSet(current, start + interval))
+                    return Math.max(start - tolerance - now, 0);
+            }
+        }
+
+        private boolean tryStart() {
+            int current;
+            do {
+                current = inFlight.get();
+                if (current >= maxInFlight)
+                    return false;
+            } while (!inFlight.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        private CapturedLimiterMetrics capture(long now) {
+            long available = -1;
+            if (interval > 0) {
+                long ahead = Math.max(nextFree.get() - now, 0);
+                available = Math.max((tolerance + interval - ahead) / interval, 0);
+            }
+            return new CapturedLimiterMetrics(function, available, inFlight.get(), maxInFlight, parked.get(),
+                    throttled.sum());
+        }
+
+    }
+
+}
@@ -0,0 +1,30 @@
+package org.ian.soonseo;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Rate limits and concurrency caps by function name. A consumer never waits on a limit: a job over it is parked
+// off the ring buffer and re-injected once it may run, so other functions keep flowing past it.
+public record Throttling(Map<String, RateLimit> limits) {
+
+    private static final Throttling NONE = new Throttling(Map.of());
+
+    public Throttling {
+        limits = Map.copyOf(limits);
+    }
+
+    public static Throttling none() {
+        return NONE;
+    }
+
+    public Throttling withLimit(String function, RateLimit limit) {
+        Map<String, RateLimit> next = new HashMap<>(limits);
+        next.put(function, limit);
+        return new Throttling(next);
+    }
+
+    public boolean enabled() {
+        return !limits.isEmpty();
+    }
+
+}
@@ -0,0 +1,211 @@
+package org.ian.soonseo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+// Hashed timing wheel: one bucket per tick, timers further out than one revolution carry a round count.
+// Any thread can schedule or cancel in O(1) through lock-free queues; only the timer thread touches buckets.
+// Everything that comes due on a tick is handed to the sink as one batch.
+class TimingWheel {
+
+    static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int WHEEL_SIZE = 1024;
+    private static final int MASK = WHEEL_SIZE - 1;
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private final Bucket[] buckets = new Bucket[WHEEL_SIZE];
+    private final ConcurrentLinkedQueue<ScheduledJob> timeouts = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<ScheduledJob> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final Consumer<List<ScheduledJob>> sink;
+    private final long startTime = System.nanoTime();
+    private volatile Thread thread;
+    private volatile boolean running = true;
+
+    TimingWheel(Consumer<List<ScheduledJob>> sink) {
+        this.sink = sink;
+        for (int i = 0; i < WHEEL_SIZE; i++)
+            buckets[i] = new Bucket();
+    }
+
+    void schedule(ScheduledJob timeout, long delayNanos) {
+        if (!running)
+            throw new RejectedExecutionException("Timing wheel is stopped");
+
+        timeout.deadline = now() + Math.max(delayNanos, 0);
+        pending.incrementAndGet();
+        enqueue(timeout);
+    }
+
+    // Puts a timer that already counts as pending back on the wheel, e.g. after the ring buffer was full
+    void rearm(ScheduledJob timeout, long deadline) {
+        timeout.deadline = deadline;
+        enqueue(timeout);
+    }
+
+    private void enqueue(ScheduledJob timeout) {
+        timeouts.add(timeout);
+        if (!started.get() && started.compareAndSet(false, true))
+            thread = Thread.ofVirtual().name("soonseo-timer").start(this::run);
+        LockSupport.unpark(thread);
+    }
+
+    void cancelled(ScheduledJob timeout) {
+        pending.decrementAndGet();
+        cancelled.add(timeout);
+    }
+
+    void fired() {
+        pending.decrementAndGet();
+    }
+
+    long pendingTimers() {
+        return pending.get();
+    }
+
+    long now() {
+        return System.nanoTime() - startTime;
+    }
+
+    // Stops the timer thread and returns the timers that never came due
+    List<ScheduledJob> stop() throws InterruptedException {
+        running = false;
+        Thread t = thread;
+        if (t != null) {
+            LockSupport.unpark(t);
+            t.join(TimeUnit.SECONDS.toMillis(5));
+        }
+
+        List<ScheduledJob> unfired = new ArrayList<>();
+        for (Bucket bucket : buckets)
+            bucket.drainTo(unfired);
+        ScheduledJob timeout;
+        while ((timeout = timeouts.poll()) != null)
+            unfired.add(timeout);
+        unfired.removeIf(ScheduledJob::isCancelled);
+        return unfired;
+    }
+
+    private void run() {
+        long tick = 0;
+        List<ScheduledJob> due = new ArrayList<>();
+
+        while (running) {
+            long sleep = (tick + 1) * TICK_NANOS - now();
+            if (sleep > 0) {
+                LockSupport.parkNanos(this, sleep);
+                continue;
+            }
+
+            transferTimeouts(tick);
+            removeCancelled();
+            buckets[(int) (tick & MASK)].expire(due);
+            tick++;
+
+            if (!due.isEmpty()) {
+                sink.accept(due);
+                due = new ArrayList<>();
+            }
+
+            // Nothing left to wait for: sleep until the next schedule() instead of ticking idle
+            if (pending.get() == 0 && timeouts.isEmpty()) {
+                LockSupport.park(this);
+                tick = Math.max(tick, now() / TICK_NANOS);
+            }
+        }
+    }
+
+    private void transferTimeouts(long tick) {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            ScheduledJob timeout = timeouts.poll();
+            if (timeout == null)
+                return;
+            if (timeout.isCancelled())
+                continue;
+
+            long calculated = timeout.deadline / TICK_NANOS;
+            timeout.remainingRounds = (calculated - tick) / WHEEL_SIZE;
+            buckets[(int) (Math.max(calculated, tick) & MASK)].add(timeout);
+        }
+    }
+
+    private void removeCancelled() {
+        ScheduledJob timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null)
+                timeout.bucket.remove(timeout);
+        }
+    }
+
+    static final class Bucket {
+
+        private ScheduledJob head;
+        private ScheduledJob tail;
+
+        void add(ScheduledJob timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void expire(List<ScheduledJob> due) {
+            ScheduledJob timeout = head;
+            while (timeout != null) {
+                ScheduledJob next = timeout.next;
+                if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    due.add(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(ScheduledJob timeout) {
+            ScheduledJob next = timeout.next;
+            if (timeout.prev != null)
+                timeout.prev.next = next;
+            if (next != null)
+                next.prev = timeout.prev;
+
+            if (timeout == head) {
+                if (timeout == tail) {
+                    tail = null;
+                    head = null;
+                } else {
+                    head = next;
+                }
+            } else if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        void drainTo(List<ScheduledJob> unfired) {
+            ScheduledJob timeout;
+            while ((timeout = head) != null) {
+                remove(timeout);
+                unfired.add(timeout);
+            }
+        }
+    }
+
+}
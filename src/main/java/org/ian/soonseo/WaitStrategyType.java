@@ -0,0 +1,35 @@
+package org.ian.soonseo;
+
+import com.lmax.disruptor.*;
+
+import java.util.concurrent.TimeUnit;
+
+public enum WaitStrategyType {
+    // Lowest latency, burns a full core per consumer even when idle
+    BUSY_SPIN,
+    // Spins then yields, still keeps a core busy while idle
+    YIELDING,
+    // Spins, yields, then parks for short periods; low idle CPU at some latency cost
+    SLEEPING,
+    // Waits on a lock until signalled by a producer; cheapest when idle
+    BLOCKING,
+    // Spins, then yields, then sleeps as the idle time grows
+    PHASED_BACKOFF;
+
+    public WaitStrategy create() {
+        return switch (this) {
+            case BUSY_SPIN -> new BusySpinWaitStrategy();
+            case YIELDING -> new YieldingWaitStrategy();
+            case SLEEPING -> new SleepingWaitStrategy();
+            case BLOCKING -> new BlockingWaitStrategy();
+            case PHASED_BACKOFF -> PhasedBackoffWaitStrategy.withSleep(10, 1000, TimeUnit.MICROSECONDS);
+        };
+    }
+
+    // Busy spinning would monopolise a carrier thread, a yielding virtual thread is requeued on its own
+    // carrier ahead of everything else, and the blocking strategy waits on a monitor, which pins virtual
+    // threads, so all three run their consumers on platform threads.
+    public boolean requiresPlatformThreads() {
+        return this == BUSY_SPIN || this == YIELDING || this == BLOCKING;
+    }
+}
@@ -0,0 +1,300 @@
+package org.ian.soonseo;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// Backs DispatchMode.WORK_STEALING. The ring buffer's single consumer pushes each job onto its routed worker's
+// deque and moves on; every worker has its own thread that runs its deque oldest first and, once that is empty,
+// takes the oldest job from another worker's deque. A long job then only holds up itself instead of every job
+// that happened to be routed behind it.
+//
+// Jobs with a partition key are never stolen. They go on a separate deque that only the worker itself runs, and
+// a key stays pinned to the worker it was last sent to until all of its jobs there have finished, so a resize that
+// moves the key elsewhere cannot let a later job overtake an earlier one.
+final class WorkStealingPool {
+
+    private static final Logger logger = LogManager.getLogger(WorkStealingPool.class);
+
+    // Upper bound on an idle park, in case a wake-up races with a worker going idle
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final ThreadFactory threadFactory;
+    private final JobDispatcher runner;
+    private final CopyOnWriteArrayList<Member> members = new CopyOnWriteArrayList<>();
+    private final ConcurrentHashMap<Worker, Member> byWorker = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Pin> pins = new ConcurrentHashMap<>();
+    // Jobs held in deques; the consumer stops taking events once every permit is out, so the ring buffer still fills
+    private final Semaphore capacity;
+    private final AtomicInteger idle = new AtomicInteger();
+    private volatile boolean running = true;
+
+    WorkStealingPool(int capacity, ThreadFactory threadFactory, JobDispatcher runner) {
+        this.capacity = new Semaphore(capacity);
+        this.threadFactory = threadFactory;
+        this.runner = runner;
+    }
+
+    void add(Worker worker) {
+        Member member = new Member(worker);
+        byWorker.put(worker, member);
+        members.add(member);
+        member.thread = threadFactory.newThread(member);
+        member.thread.start();
+    }
+
+    // The worker takes no new jobs but runs what is already on its deque; anything pushed to it afterwards moves on
+    void retire(Worker worker) {
+        Member member = byWorker.remove(worker);
+        if (member != null) {
+            member.retired = true;
+            LockSupport.unpark(member.thread);
+        }
+    }
+
+    // Called by the ring buffer consumer in place of running the job
+    void push(Worker worker, Job job) throws InterruptedException {
+        while (!capacity.tryAcquire(IDLE_PARK_NANOS, TimeUnit.NANOSECONDS)) {
+            if (!running)
+                throw new InterruptedException("Work-stealing pool stopped");
+        }
+
+        String key = job.getPartitionKey();
+        if (key != null) {
+            Member target = pins.compute(key, (k, pin) -> pin == null ? new Pin(memberFor(worker)) : pin.retain()).member;
+            target.pinned.addLast(job);
+            if (target.exited)
+                rehome(target);
+            if (target.parked)
+                LockSupport.unpark(target.thread);
+            return;
+        }
+
+        Member target = memberFor(worker);
+        target.deque.addLast(job);
+        if (target.exited)
+            rehome(target);
+        wake(target);
+    }
+
+    private Member memberFor(Worker worker) {
+        Member member = byWorker.get(worker);
+        return member != null ? member : anyLive();
+    }
+
+    private void release(String key) {
+        pins.computeIfPresent(key, (k, pin) -> --pin.outstanding == 0 ? null : pin);
+    }
+
+    // Queued time of the oldest job still sitting in a deque, or Long.MAX_VALUE if none is
+    long oldestQueuedTime() {
+        long oldest = Long.MAX_VALUE;
+        for (Member member : members)
+            oldest = older(older(oldest, member.pinned.peekFirst()), member.deque.peekFirst());
+        return oldest;
+    }
+
+    private static long older(long queuedTime, Job job) {
+        if (job == null)
+            return queuedTime;
+        return queuedTime == Long.MAX_VALUE || job.getQueuedTime() - queuedTime < 0 ? job.getQueuedTime() : queuedTime;
+    }
+
+    // True when no deque holds a job and no worker is running one. Each worker raises its busy flag before it
+    // takes a job, so checking the deques first can never miss one in between.
+    boolean isIdle() {
+        for (Member member : members) {
+            if (!member.pinned.isEmpty() || !member.deque.isEmpty())
+                return false;
+        }
+        for (Member member : members) {
+            if (member.busy)
+                return false;
+        }
+        return true;
+    }
+
+    // Empties every deque into jobs; only once stopped, so nothing is pushed behind it
+    void drainTo(List<Job> jobs) {
+        for (Member member : members) {
+            Job job;
+            while ((job = member.pinned.pollFirst()) != null)
+                jobs.add(job);
+            while ((job = member.deque.pollFirst()) != null)
+                jobs.add(job);
+        }
+    }
+
+    void stop() {
+        running = false;
+        members.forEach(member -> LockSupport.unpark(member.thread));
+    }
+
+    private Member anyLive() {
+        for (Member member : members) {
+            if (!member.retired)
+                return member;
+        }
+        throw new IllegalStateException("No live worker in the pool");
+    }
+
+    // Prefers the owner; if it is busy, rouses an idle worker to steal the job instead
+    private void wake(Member target) {
+        if (target.parked) {
+            LockSupport.unpark(target.thread);
+            return;
+        }
+        if (idle.get() == 0)
+            return;
+        for (Member member : members) {
+            if (member.parked && !member.retired) {
+                LockSupport.unpark(member.thread);
+                return;
+            }
+        }
+    }
+
+    // Moves whatever is left on an exited worker's deques to live ones. Both the exiting worker and a consumer that
+    // pushed after it exited call this, so a job can never be stranded; holding the member's lock keeps two callers
+    // from reordering a key's jobs between them.
+    private void rehome(Member member) {
+        synchronized (member) {
+            Job job;
+            while ((job = member.pinned.pollFirst()) != null) {
+                Member target = anyLive();
+                pins.computeIfPresent(job.getPartitionKey(), (k, pin) -> pin.moveTo(target));
+                target.pinned.addLast(job);
+                LockSupport.unpark(target.thread);
+            }
+            while ((job = member.deque.pollFirst()) != null) {
+                Member target = anyLive();
+                target.deque.addLast(job);
+                wake(target);
+            }
+        }
+    }
+
+    private Job steal(Member thief) {
+        // Oldest first: that is the job the victim's long-running job is delaying most
+        for (Member victim : members) {
+            if (victim == thief)
+                continue;
+            Job job = victim.deque.pollFirst();
+            if (job != null)
+                return job;
+        }
+        return null;
+    }
+
+    // Where a key's queued jobs are and how many of them have not finished yet; guarded by the pins map
+    private static final class Pin {
+
+        private volatile Member member;
+        private int outstanding = 1;
+
+        private Pin(Member member) {
+            this.member = member;
+        }
+
+        private Pin retain() {
+            outstanding++;
+            return this;
+        }
+
+        private Pin moveTo(Member member) {
+            this.member = member;
+            return this;
+        }
+
+    }
+
+    private final class Member implements Runnable {
+
+        private final Worker worker;
+        private final ConcurrentLinkedDeque<Job> deque = new ConcurrentLinkedDeque<>();
+        // Keyed jobs, which only this worker may run
+        private final ConcurrentLinkedDeque<Job> pinned = new ConcurrentLinkedDeque<>();
+        private Thread thread;
+        private volatile boolean parked;
+        private volatile boolean busy;
+        private volatile boolean retired;
+        private volatile boolean exited;
+
+        private Member(Worker worker) {
+            this.worker = worker;
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                busy = true;
+                Job job = pinned.pollFirst();
+                if (job == null)
+                    job = deque.pollFirst();
+                if (job == null && !retired)
+                    job = steal(this);
+
+                if (job == null) {
+                    busy = false;
+                    if (retired)
+                        break;
+                    idle();
+                    continue;
+                }
+
+                capacity.release();
+                try {
+                    runner.dispatch(worker, job);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    logger.error("Exception running job {}", job.getKey(), e);
+                } finally {
+                    if (job.getPartitionKey() != null)
+                        release(job.getPartitionKey());
+                    busy = false;
+                }
+            }
+            busy = false;
+
+            if (retired) {
+                exited = true;
+                members.remove(this);
+                rehome(this);
+            }
+        }
+
+        // Advertises itself before the last look, so a consumer that pushes after the look always sees it parked
+        private void idle() {
+            parked = true;
+            idle.incrementAndGet();
+            try {
+                if (pinned.isEmpty() && deque.isEmpty() && !hasStealable())
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            } finally {
+                idle.decrementAndGet();
+                parked = false;
+            }
+        }
+
+        private boolean hasStealable() {
+            for (Member member : members) {
+                if (!member.deque.isEmpty())
+                    return true;
+            }
+            return false;
+        }
+
+    }
+
+}
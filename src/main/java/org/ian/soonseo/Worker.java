@@ -2,18 +2,28 @@ package org.ian.soonseo;
 
 import org.ian.soonseo.exception.JobProcessingException;
 import org.ian.soonseo.metrics.CapturedWorkerMetrics;
+import org.ian.soonseo.metrics.LatencyHistogram;
 import org.ian.soonseo.utils.IdGenerator;
 
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
 
 public class Worker {
 
     private final String workerId;
-    private final AtomicLong completedJobs = new AtomicLong();
-    private final AtomicLong failedJobs = new AtomicLong();
-    private final AtomicLong retriedJobs = new AtomicLong();
+    // Striped: in VIRTUAL_THREAD mode many jobs of the same worker finish concurrently
+    private final LongAdder completedJobs = new LongAdder();
+    private final LongAdder failedJobs = new LongAdder();
+    private final LongAdder retriedJobs = new LongAdder();
     private final long startTime = System.nanoTime();
     private long processDelay = 0;
+    private boolean retriesEnabled = true;
+    private BiConsumer<Job, JobStatus> terminalListener = (job, status) -> {};
+    private final LatencyHistogram queueWaitLatency = new LatencyHistogram();
+    private final LatencyHistogram executionLatency = new LatencyHistogram();
+    private FunctionMetrics functionMetrics;
+    private JobCounters totals = new JobCounters();
 
     public Worker() {
         this.workerId = IdGenerator.genId();
@@ -23,56 +33,200 @@ public class Worker {
         this.processDelay = delay;
     }
 
+    void setRetriesEnabled(boolean retriesEnabled) {
+        this.retriesEnabled = retriesEnabled;
+    }
+
+    // Runs before a finished job's handle settles, so whoever waits on the handle sees its effects
+    void setTerminalListener(BiConsumer<Job, JobStatus> terminalListener) {
+        this.terminalListener = terminalListener;
+    }
+
+    void setFunctionMetrics(FunctionMetrics functionMetrics) {
+        this.functionMetrics = functionMetrics;
+    }
+
+    // Queue-wide totals, which keep counting this worker's jobs after it has been removed
+    void setTotals(JobCounters totals) {
+        this.totals = totals;
+    }
+
+    // A job that throws while it still has retries left is marked RETRYING and counted as a retry;
+    // the caller is then responsible for running it again.
     public void process(Job job) throws JobProcessingException, InterruptedException {
+        long started = System.nanoTime();
+        start(job, started);
+        simulateDelay(job);
+
+        Object result;
+        try {
+            // Run the job task
+            result = job.call();
+        } catch (Exception e) {
+            throw failed(job, started, e, "Job failed during execution: " + job.getKey());
+        }
+
+        completed(job, started, result);
+    }
+
+    // Hands every job to the handler in one call. Each job still starts, completes, retries or fails on its own,
+    // so a batch that throws is retried job by job under each job's retry policy.
+    void processBatch(List<Job> jobs, BatchHandler handler) throws JobProcessingException, InterruptedException {
+        long started = System.nanoTime();
+        for (Job job : jobs) {
+            start(job, started);
+            job.countAttempt();
+        }
+        simulateDelay(jobs.getFirst());
+
         try {
-            job.setStartedTime(System.nanoTime());
+            handler.handle(jobs);
+        } catch (Exception e) {
+            String message = "Batch of " + jobs.size() + " " + jobs.getFirst().getFunction() + " jobs failed during execution";
+            JobProcessingException failure = null;
+            for (Job job : jobs)
+                failure = failed(job, started, e, message);
+            throw failure;
+        }
+
+        for (Job job : jobs)
+            completed(job, started, null);
+    }
+
+    // Runs a published job straight from its ring buffer slot, allocating nothing on success. A failure becomes a
+    // Job, which is returned so the caller can retry or report it like any other job; null means it completed.
+    Job processSlot(JobEvent event) throws InterruptedException {
+        long started = System.nanoTime();
+        JobStartedEvent.emit(event.getFunction(), started - event.getQueuedTime());
+        try {
+            Thread.sleep(processDelay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedException("Job processing interrupted for function: " + event.getFunction());
+        }
+
+        try {
+            event.runTask();
+        } catch (Exception e) {
+            Job job = event.materialize();
+            job.setStartedTime(started);
             job.setStatus(JobStatus.STARTED);
+            job.countAttempt();
+            failed(job, started, e, "Job failed during execution: " + job.getKey());
+            return job;
+        }
+
+        long execution = recordLatency(event.getFunction(), event.getQueuedTime(), started);
+        completedJobs.increment();
+        totals.completed.increment();
+        JobCompletedEvent.emit(event.getFunction(), JobStatus.COMPLETED, execution);
+        return null;
+    }
+
+    private void start(Job job, long started) {
+        job.setStartedTime(started);
+        job.setStatus(JobStatus.STARTED);
+        JobStartedEvent.emit(job, started - job.getQueuedTime());
+    }
 
+    private void simulateDelay(Job job) throws InterruptedException {
+        try {
             // Simulate job processing delay (if applicable)
             Thread.sleep(processDelay);
-
-            // Run the job task
-            job.run();
-            job.setCompletedTime(System.nanoTime());
-            job.setStatus(JobStatus.COMPLETED);
-            completedJobs.incrementAndGet();
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new InterruptedException("Job processing interrupted for job: " + job.getKey());
-        } catch (RuntimeException e) {
-            job.setStatus(JobStatus.FAILED);
-            failedJobs.incrementAndGet();
-            throw new JobProcessingException("Job failed during execution: " + job.getKey(), e);
         }
     }
 
+    private JobProcessingException failed(Job job, long started, Exception e, String message) {
+        long execution = recordLatency(job, started);
+        if (e instanceof InterruptedException)
+            Thread.currentThread().interrupt();
+
+        JobProcessingException failure = new JobProcessingException(message, e);
+        if (retriesEnabled && job.hasRetriesLeft()) {
+            retriedJobs.increment();
+            totals.retried.increment();
+            job.setStatus(JobStatus.RETRYING);
+            JobCompletedEvent.emit(job, JobStatus.RETRYING, execution);
+        } else {
+            failedJobs.increment();
+            totals.failed.increment();
+            JobCompletedEvent.emit(job, JobStatus.FAILED, execution);
+            terminalListener.accept(job, JobStatus.FAILED);
+            job.fail(failure);
+        }
+        return failure;
+    }
+
+    private void completed(Job job, long started, Object result) {
+        long execution = recordLatency(job, started);
+        completedJobs.increment();
+        totals.completed.increment();
+        JobCompletedEvent.emit(job, JobStatus.COMPLETED, execution);
+        terminalListener.accept(job, JobStatus.COMPLETED);
+        job.complete(result);
+    }
+
+    private long recordLatency(Job job, long started) {
+        return recordLatency(job.getFunction(), job.getQueuedTime(), started);
+    }
+
+    private long recordLatency(String function, long queuedTime, long started) {
+        long queueWait = started - queuedTime;
+        long execution = System.nanoTime() - started;
+        queueWaitLatency.record(queueWait);
+        executionLatency.record(execution);
+        if (functionMetrics != null)
+            functionMetrics.record(function, queueWait, execution);
+        return execution;
+    }
+
     public void incrementRetries() {
-        retriedJobs.incrementAndGet();
+        retriedJobs.increment();
+        totals.retried.increment();
     }
 
     public long getCompletedJobs() {
-        return completedJobs.get();
+        return completedJobs.sum();
     }
 
     public long getFailedJobs() {
-        return failedJobs.get();
+        return failedJobs.sum();
     }
 
     public long getRetriedJobs() {
-        return retriedJobs.get();
+        return retriedJobs.sum();
+    }
+
+    public String getWorkerId() {
+        return workerId;
     }
 
     public long getUptime() {
         return System.nanoTime() - startTime;
     }
 
+    // Allocation-free: overwrites a slot of a MetricsReporter's ring
+    void sample(MetricsSample.WorkerSample into) {
+        into.workerId = workerId;
+        into.completed = completedJobs.sum();
+        into.retried = retriedJobs.sum();
+        into.failed = failedJobs.sum();
+        queueWaitLatency.sample(into.queueWait);
+        executionLatency.sample(into.execution);
+    }
+
     public CapturedWorkerMetrics captureMetrics() {
         return new CapturedWorkerMetrics(
                 workerId,
-                completedJobs.get(),
-                retriedJobs.get(),
-                failedJobs.get(),
-                getUptime()
+                completedJobs.sum(),
+                retriedJobs.sum(),
+                failedJobs.sum(),
+                getUptime(),
+                queueWaitLatency.capture(),
+                executionLatency.capture()
         );
     }
 
@@ -0,0 +1,107 @@
+package org.ian.soonseo;
+
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.EventProcessor;
+import com.lmax.disruptor.Sequence;
+
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+// Each worker owns its own consumer and only runs the sequences its event's routing assigns to it,
+// so jobs are executed concurrently on as many threads as there are workers. A removed worker's consumer
+// keeps going until it has passed every sequence that could still be routed to it, then halts itself.
+class WorkerEventHandler implements EventHandler<JobEvent> {
+
+    private static final long HANDOFF_PARK_NANOS = 50_000;
+
+    private final Worker worker;
+    private final List<WorkerEventHandler> peers;
+    private final JobDispatcher dispatcher;
+    private final Runnable onBatchEnd;
+    private Sequence sequenceCallback;
+    private volatile EventProcessor processor;
+    private volatile long retireAt = Long.MAX_VALUE;
+
+    WorkerEventHandler(Worker worker, List<WorkerEventHandler> peers, JobDispatcher dispatcher, Runnable onBatchEnd) {
+        this.worker = worker;
+        this.peers = peers;
+        this.dispatcher = dispatcher;
+        this.onBatchEnd = onBatchEnd;
+    }
+
+    void bind(EventProcessor processor) {
+        this.processor = processor;
+    }
+
+    Worker getWorker() {
+        return worker;
+    }
+
+    EventProcessor getProcessor() {
+        return processor;
+    }
+
+    // Both sides publish their write before reading the other's, so either this call or the consumer sees it is done
+    void retireAfter(long sequence) {
+        retireAt = sequence;
+        if (sequenceCallback.get() >= sequence)
+            processor.halt();
+    }
+
+    @Override
+    public void setSequenceCallback(Sequence sequenceCallback) {
+        this.sequenceCallback = sequenceCallback;
+    }
+
+    @Override
+    public void onEvent(JobEvent event, long sequence, boolean endOfBatch) throws Exception {
+        String partitionKey = event.getPartitionKey();
+        WorkerRouting routing = event.getRouting();
+        if (routing.owner(sequence, partitionKey) == worker) {
+            if (partitionKey != null && !routing.isHandedOff())
+                awaitHandoff(routing, sequence);
+            dispatcher.dispatch(worker, event);
+        }
+
+        if (endOfBatch) {
+            try {
+                dispatcher.flush();
+            } finally {
+                // Release the batch before the hook runs so it can see the freed slots
+                sequenceCallback.set(sequence);
+                onBatchEnd.run();
+                if (sequence >= retireAt)
+                    processor.halt();
+            }
+        }
+    }
+
+    // After a resize a key may have moved here from another worker that still has its earlier jobs queued. Those
+    // jobs sit at or below the routing's handoff point and before this sequence, so waiting until every other
+    // consumer has passed whichever comes first keeps the key in order. Publishing this consumer's own progress
+    // first means two consumers waiting on each other always let the one with the lower sequence through.
+    private void awaitHandoff(WorkerRouting routing, long sequence) throws Exception {
+        // Everything before this sequence must have run by the time the consumer says it has passed it
+        dispatcher.flush();
+        sequenceCallback.set(sequence - 1);
+        while (processor.isRunning()) {
+            long handoffAt = routing.handoffAt();
+            if (peersPast(Math.min(handoffAt, sequence - 1))) {
+                if (handoffAt <= sequence - 1)
+                    routing.markHandedOff();
+                return;
+            }
+            LockSupport.parkNanos(HANDOFF_PARK_NANOS);
+        }
+    }
+
+    private boolean peersPast(long sequence) {
+        for (WorkerEventHandler peer : peers) {
+            // A retired consumer leaves the list once it halts, so it cannot hold this up for long
+            if (peer != this && peer.sequenceCallback.get() < sequence)
+                return false;
+        }
+        return true;
+    }
+
+}
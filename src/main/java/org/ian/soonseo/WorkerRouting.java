@@ -0,0 +1,147 @@
+package org.ian.soonseo;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Which worker runs a given ring-buffer sequence. Producers stamp the current routing into each event before
+// publishing it, so every consumer reaches the same answer for the same sequence even while workers are being
+// added or removed. A worker whose consumer joined at sequence j only owns sequences after j; anything claimed
+// earlier is spread over the workers that were already consuming.
+//
+// Jobs with a partition key ignore the sequence and go to the first eligible worker clockwise from the key's hash
+// on a ring of virtual nodes, so a resize only moves the keys next to the workers that joined or left.
+final class WorkerRouting {
+
+    private static final int VIRTUAL_NODES = 64;
+
+    private final Worker[] workers;
+    private final long[] joinedAt;
+    private final long settledAt;
+    // Hash ring: sorted points and, for each, the index of the worker that owns it
+    private final long[] points;
+    private final int[] pointOwners;
+    // The cursor once this routing replaced the previous one; every event stamped with an older routing is at or
+    // below it. Long.MAX_VALUE until the queue has published the swap and read the cursor.
+    private volatile long handoffAt = Long.MAX_VALUE;
+    private volatile boolean handedOff;
+
+    private WorkerRouting(Worker[] workers, long[] joinedAt) {
+        this.workers = workers;
+        this.joinedAt = joinedAt;
+        this.settledAt = Arrays.stream(joinedAt).max().orElse(-1);
+
+        long[] hashes = new long[workers.length * VIRTUAL_NODES];
+        for (int i = 0; i < workers.length; i++) {
+            long seed = (long) workers[i].getWorkerId().hashCode() << 32;
+            for (int v = 0; v < VIRTUAL_NODES; v++)
+                hashes[i * VIRTUAL_NODES + v] = mix(seed | v);
+        }
+        Integer[] order = new Integer[hashes.length];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+        points = new long[hashes.length];
+        pointOwners = new int[hashes.length];
+        for (int i = 0; i < order.length; i++) {
+            points[i] = hashes[order[i]];
+            pointOwners[i] = order[i] / VIRTUAL_NODES;
+        }
+    }
+
+    static WorkerRouting of(List<Worker> workers) {
+        long[] joinedAt = new long[workers.size()];
+        Arrays.fill(joinedAt, -1);
+        WorkerRouting routing = new WorkerRouting(workers.toArray(new Worker[0]), joinedAt);
+        routing.handoffAt = -1;
+        routing.handedOff = true;
+        return routing;
+    }
+
+    Worker owner(long sequence, String partitionKey) {
+        return partitionKey == null ? owner(sequence) : ownerOf(partitionKey, sequence);
+    }
+
+    Worker owner(long sequence) {
+        if (sequence > settledAt)
+            return workers[(int) (sequence % workers.length)];
+
+        // Only while a sequence claimed before the newest consumer joined is still in flight.
+        // The first worker never leaves (removal is newest first), so there is always one candidate.
+        int eligible = 0;
+        for (long joined : joinedAt) {
+            if (joined < sequence)
+                eligible++;
+        }
+        int pick = (int) (sequence % eligible);
+        for (int i = 0; i < workers.length; i++) {
+            if (joinedAt[i] < sequence && pick-- == 0)
+                return workers[i];
+        }
+        throw new IllegalStateException("No worker for sequence " + sequence);
+    }
+
+    // Skipping workers that joined after the sequence gives the owner the key had before they joined
+    private Worker ownerOf(String partitionKey, long sequence) {
+        int at = Arrays.binarySearch(points, mix(partitionKey.hashCode()));
+        if (at < 0)
+            at = -at - 1;
+        for (int i = 0; i < points.length; i++) {
+            int owner = pointOwners[(at + i) % points.length];
+            if (joinedAt[owner] < sequence)
+                return workers[owner];
+        }
+        throw new IllegalStateException("No worker for sequence " + sequence);
+    }
+
+    int size() {
+        return workers.length;
+    }
+
+    long handoffAt() {
+        return handoffAt;
+    }
+
+    void setHandoffAt(long handoffAt) {
+        this.handoffAt = handoffAt;
+    }
+
+    // True once every consumer has been seen past handoffAt, after which keyed jobs no longer need to wait
+    boolean isHandedOff() {
+        return handedOff;
+    }
+
+    void markHandedOff() {
+        handedOff = true;
+    }
+
+    WorkerRouting with(Worker worker, long joined) {
+        Worker[] nextWorkers = Arrays.copyOf(workers, workers.length + 1);
+        long[] nextJoinedAt = Arrays.copyOf(joinedAt, joinedAt.length + 1);
+        nextWorkers[workers.length] = worker;
+        nextJoinedAt[joinedAt.length] = joined;
+        return new WorkerRouting(nextWorkers, nextJoinedAt);
+    }
+
+    WorkerRouting without(Worker worker) {
+        int index = Arrays.asList(workers).indexOf(worker);
+        if (index < 0)
+            return this;
+
+        Worker[] nextWorkers = new Worker[workers.length - 1];
+        long[] nextJoinedAt = new long[joinedAt.length - 1];
+        for (int i = 0, j = 0; i < workers.length; i++) {
+            if (i == index)
+                continue;
+            nextWorkers[j] = workers[i];
+            nextJoinedAt[j++] = joinedAt[i];
+        }
+        return new WorkerRouting(nextWorkers, nextJoinedAt);
+    }
+
+    // SplitMix64 finaliser; String.hashCode alone clusters similar keys on the ring
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+}
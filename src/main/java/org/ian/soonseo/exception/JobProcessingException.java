@@ -1,6 +1,9 @@
 package org.ian.soonseo.exception;
 
 public class JobProcessingException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
     public JobProcessingException(String message) {
         super(message);
     }
@@ -0,0 +1,483 @@
+package org.ian.soonseo.journal;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.ian.soonseo.Priority;
+import org.ian.soonseo.utils.JobId;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+// Append-only journal of job descriptors and status transitions, split into fixed-size memory-mapped segments.
+// Records are copied into the mapping under a short lock; a sync thread forces whatever was written since the
+// last force, so one fsync covers every record appended while the previous one was in progress (group commit).
+// The oldest segments are deleted once every job submitted in them has reached a terminal record; only a prefix
+// is ever removed, so a terminal record can never disappear while the submission it closes is still on disk. The
+// flip side is that one long-running job pins its segment and every later one, however many of their jobs are
+// done, so the journal keeps growing until that job reaches a terminal record.
+// Appenders only retire such segments; the sync thread closes and deletes them, so file system calls never run
+// under the append lock. Closing the channel does not unmap the segment: the mapping, and the disk space of the
+// deleted file, are released once the garbage collector reclaims its buffer.
+public final class JobJournal implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(JobJournal.class);
+
+    static final byte SUBMITTED = 1;
+    static final byte STARTED = 2;
+    static final byte COMPLETED = 3;
+    static final byte FAILED = 4;
+    static final byte REJECTED = 5;
+
+    // length, crc, type, id
+    private static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES + 1 + Long.BYTES * 2;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long syncIntervalNanos;
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    // Compacted away but not deleted yet; guarded by appendLock
+    private final List<Segment> retired = new ArrayList<>();
+    private final Map<JobId, Segment> liveJobs = new ConcurrentHashMap<>();
+    private final List<RecoveredJob> recovered;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition synced = syncLock.newCondition();
+    private final Thread syncer;
+    private Segment active;
+    // Total bytes ever appended and total bytes known to be on disk; positions handed to awaitDurable
+    private volatile long appended;
+    private volatile long durable;
+    private volatile boolean closed;
+
+    private JobJournal(Path directory, int segmentSize, long syncInterval) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(syncInterval);
+        Files.createDirectories(directory);
+        this.recovered = replay();
+        this.syncer = Thread.ofPlatform().daemon().name("soonseo-journal-sync").start(this::syncLoop);
+    }
+
+    public static JobJournal open(Path directory, int segmentSize, long syncInterval) throws IOException {
+        if (segmentSize < HEADER_SIZE * 16)
+            throw new IllegalArgumentException("segmentSize too small: " + segmentSize);
+        return new JobJournal(directory, segmentSize, syncInterval);
+    }
+
+    // Jobs that were submitted but never reached a terminal record, in submission order
+    public List<RecoveredJob> recovered() {
+        return recovered;
+    }
+
+    public long submitted(JobId id, String function, String args, Priority priority) {
+        return submitted(id, function, args, priority, null);
+    }
+
+    public long submitted(JobId id, String function, String args, Priority priority, String partitionKey) {
+        byte[] functionBytes = function.getBytes(StandardCharsets.UTF_8);
+        byte[] argsBytes = args == null ? new byte[0] : args.getBytes(StandardCharsets.UTF_8);
+        byte[] keyBytes = partitionKey == null ? new byte[0] : partitionKey.getBytes(StandardCharsets.UTF_8);
+        int payload = 1 + Integer.BYTES + functionBytes.length + Integer.BYTES + argsBytes.length
+                + Integer.BYTES + keyBytes.length;
+
+        appendLock.lock();
+        try {
+            MappedByteBuffer buffer = reserve(payload);
+            int at = active.writePos;
+            int body = writeHeader(buffer, at, SUBMITTED, id);
+            buffer.put(body, (byte) priority.ordinal());
+            buffer.putInt(body + 1, functionBytes.length);
+            buffer.put(body + 1 + Integer.BYTES, functionBytes);
+            buffer.putInt(body + 1 + Integer.BYTES + functionBytes.length, argsBytes.length);
+            buffer.put(body + 1 + Integer.BYTES * 2 + functionBytes.length, argsBytes);
+            // -1 tells a missing key apart from an empty one
+            int keyAt = body + 1 + Integer.BYTES * 2 + functionBytes.length + argsBytes.length;
+            buffer.putInt(keyAt, partitionKey == null ? -1 : keyBytes.length);
+            buffer.put(keyAt + Integer.BYTES, keyBytes);
+            seal(buffer, at, payload);
+
+            active.live.incrementAndGet();
+            liveJobs.put(id, active);
+            return appended;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public void started(JobId id) {
+        append(STARTED, id);
+    }
+
+    public void completed(JobId id) {
+        terminal(COMPLETED, id);
+    }
+
+    public void failed(JobId id) {
+        terminal(FAILED, id);
+    }
+
+    // Submission never made it into the queue; a later resubmit starts a fresh entry
+    public void rejected(JobId id) {
+        terminal(REJECTED, id);
+    }
+
+    private void terminal(byte type, JobId id) {
+        if (closed)
+            return;
+        Segment segment = liveJobs.remove(id);
+        if (segment == null)
+            return;
+
+        append(type, id);
+        if (segment.live.decrementAndGet() == 0)
+            compact();
+    }
+
+    private void append(byte type, JobId id) {
+        appendLock.lock();
+        try {
+            if (closed)
+                return;
+            MappedByteBuffer buffer = reserve(0);
+            int at = active.writePos;
+            writeHeader(buffer, at, type, id);
+            seal(buffer, at, 0);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Group commit: returns once a force that started after this position was appended has finished
+    public void awaitDurable(long position) {
+        if (durable >= position)
+            return;
+
+        LockSupport.unpark(syncer);
+        syncLock.lock();
+        try {
+            while (durable < position && !closed)
+                synced.awaitUninterruptibly();
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    public int segmentCount() {
+        appendLock.lock();
+        try {
+            return segments.size();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        appendLock.lock();
+        try {
+            if (closed)
+                return;
+            closed = true;
+        } finally {
+            appendLock.unlock();
+        }
+
+        LockSupport.unpark(syncer);
+        try {
+            syncer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sync();
+        deleteRetired();
+        for (Segment segment : segments)
+            segment.close();
+        syncLock.lock();
+        try {
+            synced.signalAll();
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private MappedByteBuffer reserve(int payload) {
+        if (closed)
+            throw new IllegalStateException("Journal is closed");
+        int size = HEADER_SIZE + payload;
+        if (size > segmentSize - Integer.BYTES)
+            throw new IllegalArgumentException("Record of " + size + " bytes does not fit in a segment");
+
+        // Keep a zero length word after the last record so replay knows where the segment ends
+        if (active.writePos + size > active.size - Integer.BYTES)
+            roll();
+        return active.buffer;
+    }
+
+    private int writeHeader(MappedByteBuffer buffer, int at, byte type, JobId id) {
+        buffer.put(at + Integer.BYTES * 2, type);
+        buffer.putLong(at + Integer.BYTES * 2 + 1, id.getMostSignificantBits());
+        buffer.putLong(at + Integer.BYTES * 2 + 1 + Long.BYTES, id.getLeastSignificantBits());
+        return at + HEADER_SIZE;
+    }
+
+    // The crc and length go in last; a torn record fails its crc and ends replay of that segment
+    private void seal(MappedByteBuffer buffer, int at, int payload) {
+        int bodyLength = HEADER_SIZE - Integer.BYTES * 2 + payload;
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(at + Integer.BYTES * 2, bodyLength));
+        buffer.putInt(at + Integer.BYTES, (int) crc.getValue());
+        buffer.putInt(at, bodyLength);
+
+        int size = HEADER_SIZE + payload;
+        active.writePos += size;
+        appended += size;
+    }
+
+    private void roll() {
+        try {
+            active.sealed = true;
+            Segment next = Segment.create(directory, active.index + 1, segmentSize);
+            segments.addLast(next);
+            active = next;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to roll journal segment", e);
+        }
+        compact();
+    }
+
+    private void compact() {
+        boolean compacted = false;
+        appendLock.lock();
+        try {
+            while (segments.size() > 1) {
+                Segment oldest = segments.peekFirst();
+                if (!oldest.sealed || oldest.live.get() != 0)
+                    break;
+                retired.add(segments.pollFirst());
+                compacted = true;
+            }
+        } finally {
+            appendLock.unlock();
+        }
+        // Null while replay compacts; the sync thread deletes what replay retired as soon as it starts
+        if (compacted && syncer != null)
+            LockSupport.unpark(syncer);
+    }
+
+    // Only called from the sync thread, which also forces segments, so none is closed under a force in progress
+    private void deleteRetired() {
+        List<Segment> removed;
+        appendLock.lock();
+        try {
+            if (retired.isEmpty())
+                return;
+            removed = new ArrayList<>(retired);
+            retired.clear();
+        } finally {
+            appendLock.unlock();
+        }
+
+        for (Segment segment : removed) {
+            // Its bytes may still be waiting for the next force, which is fine since nothing in it matters any more
+            segment.close();
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                logger.warn("Failed to delete compacted segment {}", segment.path, e);
+            }
+        }
+    }
+
+    private void syncLoop() {
+        while (!closed) {
+            deleteRetired();
+            if (appended == durable) {
+                LockSupport.parkNanos(this, syncIntervalNanos);
+                continue;
+            }
+            sync();
+            syncLock.lock();
+            try {
+                synced.signalAll();
+            } finally {
+                syncLock.unlock();
+            }
+        }
+    }
+
+    private void sync() {
+        long target;
+        List<Segment> dirty = new ArrayList<>(2);
+        List<Integer> ends = new ArrayList<>(2);
+        appendLock.lock();
+        try {
+            target = appended;
+            for (Segment segment : segments) {
+                if (segment.syncedPos < segment.writePos) {
+                    dirty.add(segment);
+                    ends.add(segment.writePos);
+                }
+            }
+        } finally {
+            appendLock.unlock();
+        }
+
+        for (int i = 0; i < dirty.size(); i++)
+            dirty.get(i).force(ends.get(i));
+        durable = target;
+    }
+
+    private List<RecoveredJob> replay() throws IOException {
+        List<Path> paths;
+        try (Stream<Path> files = Files.list(directory)) {
+            paths = files.filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .sorted()
+                    .toList();
+        }
+
+        Map<JobId, RecoveredJob> pending = new LinkedHashMap<>();
+        Map<JobId, Segment> owners = new LinkedHashMap<>();
+        for (Path path : paths) {
+            Segment segment = Segment.open(path, segmentSize);
+            segments.addLast(segment);
+            segment.sealed = true;
+            scan(segment, pending, owners);
+        }
+
+        if (segments.isEmpty()) {
+            active = Segment.create(directory, 0, segmentSize);
+            segments.addLast(active);
+        } else {
+            active = segments.peekLast();
+            active.sealed = false;
+        }
+
+        owners.forEach((id, segment) -> {
+            segment.live.incrementAndGet();
+            liveJobs.put(id, segment);
+        });
+        compact();
+
+        if (!pending.isEmpty())
+            logger.info("Recovered {} unfinished jobs from {}", pending.size(), directory);
+        return List.copyOf(pending.values());
+    }
+
+    private static void scan(Segment segment, Map<JobId, RecoveredJob> pending, Map<JobId, Segment> owners) {
+        MappedByteBuffer buffer = segment.buffer;
+        int at = 0;
+        while (at + HEADER_SIZE <= segment.size) {
+            int bodyLength = buffer.getInt(at);
+            if (bodyLength <= 0 || at + Integer.BYTES * 2 + bodyLength > segment.size)
+                break;
+
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(at + Integer.BYTES * 2, bodyLength));
+            if ((int) crc.getValue() != buffer.getInt(at + Integer.BYTES)) {
+                logger.warn("Torn record at {} in {}, ignoring the rest of the segment", at, segment.path);
+                break;
+            }
+
+            int typeAt = at + Integer.BYTES * 2;
+            byte type = buffer.get(typeAt);
+            JobId id = new JobId(buffer.getLong(typeAt + 1), buffer.getLong(typeAt + 1 + Long.BYTES));
+            switch (type) {
+                case SUBMITTED -> {
+                    int body = at + HEADER_SIZE;
+                    Priority priority = Priority.values()[buffer.get(body)];
+                    int argsAt = body + 1 + Integer.BYTES + buffer.getInt(body + 1);
+                    int keyAt = argsAt + Integer.BYTES + buffer.getInt(argsAt);
+                    String function = readString(buffer, body + 1);
+                    String args = readString(buffer, argsAt);
+                    String partitionKey = buffer.getInt(keyAt) < 0 ? null : readString(buffer, keyAt);
+                    pending.put(id, new RecoveredJob(id, function, args, priority, partitionKey));
+                    owners.put(id, segment);
+                }
+                case COMPLETED, FAILED, REJECTED -> {
+                    pending.remove(id);
+                    owners.remove(id);
+                }
+                default -> {
+                    // STARTED only matters to humans reading the log; the job is replayed either way
+                }
+            }
+            at += Integer.BYTES * 2 + bodyLength;
+        }
+        segment.writePos = at;
+        segment.syncedPos = at;
+    }
+
+    private static String readString(MappedByteBuffer buffer, int at) {
+        byte[] bytes = new byte[buffer.getInt(at)];
+        buffer.get(at + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class Segment {
+
+        final long index;
+        final Path path;
+        final int size;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        final AtomicInteger live = new AtomicInteger();
+        int writePos;
+        int syncedPos;
+        boolean sealed;
+
+        private Segment(long index, Path path, int size) throws IOException {
+            this.index = index;
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.size = (int) Math.max(size, channel.size());
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, this.size);
+        }
+
+        static Segment create(Path directory, long index, int size) throws IOException {
+            return new Segment(index, directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX)), size);
+        }
+
+        static Segment open(Path path, int size) throws IOException {
+            String name = path.getFileName().toString();
+            long index = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+            return new Segment(index, path, size);
+        }
+
+        // Only called from the sync thread, which owns syncedPos once replay is done
+        void force(int to) {
+            buffer.force(syncedPos, to - syncedPos);
+            syncedPos = to;
+        }
+
+        // Leaves buffer mapped until it is garbage collected; there is no supported way to unmap it sooner
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close journal segment {}", path, e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,12 @@
+package org.ian.soonseo.journal;
+
+import org.ian.soonseo.Priority;
+import org.ian.soonseo.utils.JobId;
+
+public record RecoveredJob(JobId id, String function, String args, Priority priority, String partitionKey) {
+
+    public RecoveredJob(JobId id, String function, String args, Priority priority) {
+        this(id, function, args, priority, null);
+    }
+
+}
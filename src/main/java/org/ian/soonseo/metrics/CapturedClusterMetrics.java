@@ -0,0 +1,12 @@
+package org.ian.soonseo.metrics;
+
+public record CapturedClusterMetrics(
+        int member,
+        int livePeers,
+        long forwarded,
+        long received,
+        long dropped,
+        long reclaimed,
+        long bytesSent,
+        long bytesReceived) {
+}
@@ -0,0 +1,7 @@
+package org.ian.soonseo.metrics;
+
+public record CapturedFunctionMetrics(
+        String function,
+        CapturedLatencyMetrics queueWait,
+        CapturedLatencyMetrics execution) {
+}
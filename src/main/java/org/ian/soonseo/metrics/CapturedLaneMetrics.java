@@ -0,0 +1,9 @@
+package org.ian.soonseo.metrics;
+
+import org.ian.soonseo.Priority;
+
+public record CapturedLaneMetrics(
+        Priority priority,
+        long depth,
+        CapturedLatencyMetrics queueWait) {
+}
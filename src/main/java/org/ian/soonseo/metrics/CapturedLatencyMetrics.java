@@ -0,0 +1,11 @@
+package org.ian.soonseo.metrics;
+
+// Latency percentiles in nanoseconds; sum is the total of every recorded latency
+public record CapturedLatencyMetrics(
+        long count,
+        long p50,
+        long p99,
+        long p999,
+        long max,
+        long sum) {
+}
@@ -0,0 +1,10 @@
+package org.ian.soonseo.metrics;
+
+public record CapturedLimiterMetrics(
+        String function,
+        long availablePermits,
+        int inFlight,
+        int maxInFlight,
+        int parked,
+        long throttled) {
+}
@@ -1,7 +1,16 @@
 package org.ian.soonseo.metrics;
 
+import java.util.List;
+
 public record CapturedQueueMetrics(
         long active,
         long queued,
-        long scheduled) {
+        long completed,
+        long retried,
+        long failed,
+        long scheduled,
+        long overflow,
+        long rejected,
+        long coalesced,
+        List<CapturedLaneMetrics> lanes) {
 }
@@ -5,5 +5,7 @@ public record CapturedWorkerMetrics(
         long completed,
         long retried,
         long failed,
-        long uptime) {
+        long uptime,
+        CapturedLatencyMetrics queueWait,
+        CapturedLatencyMetrics execution) {
 }
@@ -0,0 +1,123 @@
+package org.ian.soonseo.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// HDR-style log-linear histogram of nanosecond latencies. Every power of two is split into 32 linear
+// sub-buckets, so any recorded value is reported within ~3% using a fixed 1920 counters (15KB).
+// record() is an atomic increment, a striped add to the running total and an occasional max update:
+// lock-free and allocation-free.
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_BITS = SUB_BUCKET_BITS - 1;
+    private static final int SUB_BUCKET_HALF_COUNT = 1 << SUB_BUCKET_HALF_BITS;
+    private static final long SUB_BUCKET_MASK = SUB_BUCKET_COUNT - 1;
+    private static final int BUCKET_COUNT = Long.SIZE - SUB_BUCKET_BITS + 1;
+    private static final int LENGTH = (BUCKET_COUNT + 1) * SUB_BUCKET_HALF_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(LENGTH);
+    private final AtomicLong max = new AtomicLong();
+    private final LongAdder sum = new LongAdder();
+
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        counts.getAndIncrement(indexOf(nanos));
+        sum.add(nanos);
+        if (nanos > max.get())
+            max.accumulateAndGet(nanos, Math::max);
+    }
+
+    static int indexOf(long value) {
+        int bucketIndex = Long.SIZE - Long.numberOfLeadingZeros(value | SUB_BUCKET_MASK) - SUB_BUCKET_BITS;
+        int subBucketIndex = (int) (value >>> bucketIndex);
+        return ((bucketIndex + 1) << SUB_BUCKET_HALF_BITS) + subBucketIndex - SUB_BUCKET_HALF_COUNT;
+    }
+
+    // Largest value that lands in the same counter, so percentiles never under-report
+    static long highestEquivalentValue(int index) {
+        int bucketIndex = (index >> SUB_BUCKET_HALF_BITS) - 1;
+        int subBucketIndex = (index & (SUB_BUCKET_HALF_COUNT - 1)) + SUB_BUCKET_HALF_COUNT;
+        if (bucketIndex < 0) {
+            subBucketIndex -= SUB_BUCKET_HALF_COUNT;
+            bucketIndex = 0;
+        }
+        long lowest = (long) subBucketIndex << bucketIndex;
+        return lowest + (1L << bucketIndex) - 1;
+    }
+
+    // Counters are read one by one while writers keep recording, so a snapshot taken under load
+    // can be off by the handful of values recorded during the scan.
+    public CapturedLatencyMetrics capture() {
+        long[] snapshot = new long[LENGTH];
+        long total = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+
+        long maxValue = max.get();
+        if (total == 0)
+            return new CapturedLatencyMetrics(0, 0, 0, 0, 0, 0);
+        return new CapturedLatencyMetrics(total,
+                Math.min(percentile(snapshot, total, 0.50), maxValue),
+                Math.min(percentile(snapshot, total, 0.99), maxValue),
+                Math.min(percentile(snapshot, total, 0.999), maxValue),
+                maxValue,
+                sum.sum());
+    }
+
+    // Allocation-free counterpart of capture() for periodic samplers. The counters are scanned twice, once for
+    // the total and once for the percentiles; counts only grow in between, so every percentile is still found.
+    public void sample(LatencySample into) {
+        long total = 0;
+        for (int i = 0; i < LENGTH; i++)
+            total += counts.get(i);
+
+        long maxValue = max.get();
+        into.count = total;
+        into.sum = sum.sum();
+        into.max = maxValue;
+        if (total == 0) {
+            into.p50 = into.p99 = into.p999 = 0;
+            return;
+        }
+
+        long rank50 = rank(total, 0.50);
+        long rank99 = rank(total, 0.99);
+        long rank999 = rank(total, 0.999);
+        long p50 = -1, p99 = -1, p999 = -1;
+        long seen = 0;
+        for (int i = 0; i < LENGTH && p999 < 0; i++) {
+            seen += counts.get(i);
+            if (p50 < 0 && seen >= rank50)
+                p50 = highestEquivalentValue(i);
+            if (p99 < 0 && seen >= rank99)
+                p99 = highestEquivalentValue(i);
+            if (seen >= rank999)
+                p999 = highestEquivalentValue(i);
+        }
+        into.p50 = Math.min(p50, maxValue);
+        into.p99 = Math.min(p99, maxValue);
+        into.p999 = Math.min(p999, maxValue);
+    }
+
+    private static long rank(long total, double quantile) {
+        return Math.max(1, (long) Math.ceil(quantile * total));
+    }
+
+    private static long percentile(long[] snapshot, long total, double quantile) {
+        long rank = rank(total, quantile);
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank)
+                return highestEquivalentValue(i);
+        }
+        return highestEquivalentValue(snapshot.length - 1);
+    }
+
+}
@@ -0,0 +1,41 @@
+package org.ian.soonseo.metrics;
+
+// Reusable counterpart of CapturedLatencyMetrics, overwritten in place by LatencyHistogram.sample
+public final class LatencySample {
+
+    long count;
+    long sum;
+    long p50;
+    long p99;
+    long p999;
+    long max;
+
+    public long count() { return count; }
+
+    // Nanoseconds over every recorded latency
+    public long sum() { return sum; }
+
+    public long p50() { return p50; }
+
+    public long p99() { return p99; }
+
+    public long p999() { return p999; }
+
+    public long max() { return max; }
+
+    public void copyTo(LatencySample target) {
+        target.count = count;
+        target.sum = sum;
+        target.p50 = p50;
+        target.p99 = p99;
+        target.p999 = p999;
+        target.max = max;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencySample[count=" + count + ", sum=" + sum + ", p50=" + p50 + ", p99=" + p99
+                + ", p999=" + p999 + ", max=" + max + "]";
+    }
+
+}
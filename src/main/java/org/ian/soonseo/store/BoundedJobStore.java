@@ -0,0 +1,87 @@
+package org.ian.soonseo.store;
+
+import org.ian.soonseo.Job;
+import org.ian.soonseo.utils.JobId;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Keeps every in-flight job, but only the most recent maxTerminalJobs COMPLETED/FAILED jobs,
+// and none that finished longer than ttl ago.
+public class BoundedJobStore implements JobStore {
+
+    private final ConcurrentHashMap<JobId, Job> jobs = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<TerminalEntry> terminalJobs = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger terminalCount = new AtomicInteger();
+    private final int maxTerminalJobs;
+    private final long ttlNanos;
+
+    public BoundedJobStore(int maxTerminalJobs, Duration ttl) {
+        if (maxTerminalJobs < 0)
+            throw new IllegalArgumentException("maxTerminalJobs must not be negative: " + maxTerminalJobs);
+
+        this.maxTerminalJobs = maxTerminalJobs;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    @Override
+    public void track(Job job) {
+        jobs.put(job.getId(), job);
+    }
+
+    @Override
+    public void untrack(Job job) {
+        jobs.remove(job.getId(), job);
+    }
+
+    @Override
+    public void onTerminal(Job job) {
+        if (!jobs.containsKey(job.getId()))
+            return;
+
+        long now = System.nanoTime();
+        terminalJobs.offer(new TerminalEntry(job, now));
+        terminalCount.incrementAndGet();
+        evict(now);
+    }
+
+    @Override
+    public Job get(String key) {
+        JobId id = JobId.tryParse(key);
+        return id == null ? null : jobs.get(id);
+    }
+
+    @Override
+    public void forEach(Consumer<Job> action) {
+        evict(System.nanoTime());
+        jobs.values().forEach(action);
+    }
+
+    @Override
+    public int size() {
+        evict(System.nanoTime());
+        return jobs.size();
+    }
+
+    private void evict(long now) {
+        TerminalEntry head;
+        while ((head = terminalJobs.peek()) != null) {
+            if (terminalCount.get() <= maxTerminalJobs && now - head.terminalTime() < ttlNanos)
+                return;
+
+            TerminalEntry evicted = terminalJobs.poll();
+            if (evicted == null)
+                return;
+
+            terminalCount.decrementAndGet();
+            jobs.remove(evicted.job().getId(), evicted.job());
+        }
+    }
+
+    private record TerminalEntry(Job job, long terminalTime) {
+    }
+
+}
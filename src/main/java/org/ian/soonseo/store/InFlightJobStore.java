@@ -0,0 +1,44 @@
+package org.ian.soonseo.store;
+
+import org.ian.soonseo.Job;
+import org.ian.soonseo.utils.JobId;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+public class InFlightJobStore implements JobStore {
+
+    private final ConcurrentHashMap<JobId, Job> jobs = new ConcurrentHashMap<>();
+
+    @Override
+    public void track(Job job) {
+        jobs.put(job.getId(), job);
+    }
+
+    @Override
+    public void untrack(Job job) {
+        jobs.remove(job.getId(), job);
+    }
+
+    @Override
+    public void onTerminal(Job job) {
+        jobs.remove(job.getId(), job);
+    }
+
+    @Override
+    public Job get(String key) {
+        JobId id = JobId.tryParse(key);
+        return id == null ? null : jobs.get(id);
+    }
+
+    @Override
+    public void forEach(Consumer<Job> action) {
+        jobs.values().forEach(action);
+    }
+
+    @Override
+    public int size() {
+        return jobs.size();
+    }
+
+}
@@ -0,0 +1,22 @@
+package org.ian.soonseo.store;
+
+import org.ian.soonseo.Job;
+
+import java.util.function.Consumer;
+
+public interface JobStore {
+
+    void track(Job job);
+
+    void untrack(Job job);
+
+    void onTerminal(Job job);
+
+    // Null when no job has this key, including keys that are not job ids at all
+    Job get(String key);
+
+    void forEach(Consumer<Job> action);
+
+    int size();
+
+}
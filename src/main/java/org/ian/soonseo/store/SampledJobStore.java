@@ -0,0 +1,61 @@
+package org.ian.soonseo.store;
+
+import org.ian.soonseo.Job;
+
+import java.util.function.Consumer;
+
+// Tracks a deterministic fraction of jobs, decided from the job id so that
+// track and onTerminal always agree on whether a job was sampled.
+public class SampledJobStore implements JobStore {
+
+    private static final int SCALE = 10_000;
+
+    private final JobStore delegate;
+    private final int threshold;
+
+    public SampledJobStore(JobStore delegate, double sampleRate) {
+        if (sampleRate < 0.0 || sampleRate > 1.0)
+            throw new IllegalArgumentException("sampleRate must be between 0 and 1: " + sampleRate);
+
+        this.delegate = delegate;
+        this.threshold = (int) Math.round(sampleRate * SCALE);
+    }
+
+    private boolean isSampled(Job job) {
+        return Math.floorMod(job.getId().hashCode(), SCALE) < threshold;
+    }
+
+    @Override
+    public void track(Job job) {
+        if (isSampled(job))
+            delegate.track(job);
+    }
+
+    @Override
+    public void untrack(Job job) {
+        if (isSampled(job))
+            delegate.untrack(job);
+    }
+
+    @Override
+    public void onTerminal(Job job) {
+        if (isSampled(job))
+            delegate.onTerminal(job);
+    }
+
+    @Override
+    public Job get(String key) {
+        return delegate.get(key);
+    }
+
+    @Override
+    public void forEach(Consumer<Job> action) {
+        delegate.forEach(action);
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+}
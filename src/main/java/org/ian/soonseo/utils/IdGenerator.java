@@ -1,30 +1,55 @@
 package org.ian.soonseo.utils;
 
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.ThreadLocalRandom;
 
+// Ids are UUIDv7: 48 bits of milliseconds, a 12-bit counter and 62 random bits. Each thread keeps its own counter,
+// so producers never contend on a shared word; ids are strictly ordered per thread, while ids from different
+// threads in the same millisecond may interleave and are kept apart by the random bits.
 public class IdGenerator {
 
-    private static final String ID_FORMAT = "%08x-%04x-%04x-%04x-%012x";
+    private static final long VERSION = 0x7000L;
+    private static final long VARIANT = 0x8000000000000000L;
+    private static final int COUNTER_BITS = 12;
+    private static final long COUNTER_MASK = (1L << COUNTER_BITS) - 1;
+
+    private static final ThreadLocal<Local> locals = ThreadLocal.withInitial(Local::new);
 
     public static String genId() {
-        long timestamp = System.currentTimeMillis();
-        long timePart = timestamp & 0xFFFFFFFFFFFFL;
-        long randomPartA = ThreadLocalRandom.current().nextLong() & 0xFFFFFFFFFFFFFL;
-        long randomPartB = ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL;
-        long version = 0x7000L;
-        long mostSignificantBits = (timePart << 16) | version | ((randomPartA >>> 32) & 0xFFFFL);
-        long leastSignificantBits = (randomPartA << 32) | (randomPartB & 0xFFFFFFFFL);
-
-        return formatId(mostSignificantBits, leastSignificantBits);
+        Local local = locals.get();
+        return render(next(local), local.buffer);
+    }
+
+    public static JobId nextId() {
+        return next(locals.get());
+    }
+
+    private static JobId next(Local local) {
+        long now = (System.currentTimeMillis() & 0xFFFFFFFFFFFFL) << COUNTER_BITS;
+        // Counter overflow borrows from the next millisecond instead of breaking the order
+        long next = Math.max(now, local.lastTick + 1);
+        local.lastTick = next;
+
+        long mostSignificantBits = ((next >>> COUNTER_BITS) << 16) | VERSION | (next & COUNTER_MASK);
+        long leastSignificantBits = VARIANT | (ThreadLocalRandom.current().nextLong() >>> 2);
+
+        return new JobId(mostSignificantBits, leastSignificantBits);
+    }
+
+    static String render(JobId id) {
+        return render(id, locals.get().buffer);
     }
 
-    private static String formatId(long mostSigBits, long leastSigBits) {
-        return String.format(ID_FORMAT,
-                (mostSigBits >> 32) & 0xFFFFFFFFL,
-                (mostSigBits >> 16) & 0xFFFFL,
-                (mostSigBits) & 0xFFFFL,
-                (leastSigBits >> 48) & 0xFFFFL,
-                (leastSigBits) & 0xFFFFFFFFFFFFL);
+    private static String render(JobId id, byte[] buffer) {
+        id.writeTo(buffer, 0);
+        return new String(buffer, 0, JobId.LENGTH, StandardCharsets.ISO_8859_1);
+    }
+
+    private static final class Local {
+
+        final byte[] buffer = new byte[JobId.LENGTH];
+        // (millis << 12 | counter) of the last id this thread issued
+        long lastTick;
     }
 
 }
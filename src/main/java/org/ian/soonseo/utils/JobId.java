@@ -0,0 +1,114 @@
+package org.ian.soonseo.utils;
+
+import java.nio.charset.StandardCharsets;
+
+// UUIDv7 layout kept as two longs; the canonical string is only rendered on first request.
+public final class JobId implements Comparable<JobId> {
+
+    public static final int LENGTH = 36;
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.ISO_8859_1);
+
+    private final long mostSigBits;
+    private final long leastSigBits;
+    private String rendered;
+
+    public JobId(long mostSigBits, long leastSigBits) {
+        this.mostSigBits = mostSigBits;
+        this.leastSigBits = leastSigBits;
+    }
+
+    public long getMostSignificantBits() { return mostSigBits; }
+
+    public long getLeastSignificantBits() { return leastSigBits; }
+
+    public long getTimestamp() {
+        return mostSigBits >>> 16;
+    }
+
+    public void writeTo(byte[] dst, int offset) {
+        writeHex(dst, offset, mostSigBits >>> 32, 8);
+        dst[offset + 8] = '-';
+        writeHex(dst, offset + 9, mostSigBits >>> 16, 4);
+        dst[offset + 13] = '-';
+        writeHex(dst, offset + 14, mostSigBits, 4);
+        dst[offset + 18] = '-';
+        writeHex(dst, offset + 19, leastSigBits >>> 48, 4);
+        dst[offset + 23] = '-';
+        writeHex(dst, offset + 24, leastSigBits, 12);
+    }
+
+    private static void writeHex(byte[] dst, int offset, long value, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            dst[i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+    public static JobId fromString(String value) {
+        JobId id = tryParse(value);
+        if (id == null)
+            throw new IllegalArgumentException("Invalid job id: " + value);
+        return id;
+    }
+
+    // Null for anything that is not a job id, so lookups by a caller's key never throw
+    public static JobId tryParse(String value) {
+        if (value == null || value.length() != LENGTH
+                || value.charAt(8) != '-' || value.charAt(13) != '-'
+                || value.charAt(18) != '-' || value.charAt(23) != '-')
+            return null;
+
+        // The five groups of the UUID string form
+        long timeLow = readHex(value, 0, 8);
+        long timeMid = readHex(value, 9, 4);
+        long timeHigh = readHex(value, 14, 4);
+        long clockSeq = readHex(value, 19, 4);
+        long node = readHex(value, 24, 12);
+        if ((timeLow | timeMid | timeHigh | clockSeq | node) < 0)
+            return null;
+        return new JobId(timeLow << 32 | timeMid << 16 | timeHigh, clockSeq << 48 | node);
+    }
+
+    // -1 if any digit is not hex; at most 12 digits, so a valid result is never negative
+    private static long readHex(String value, int offset, int digits) {
+        long result = 0;
+        for (int i = offset; i < offset + digits; i++) {
+            int digit = Character.digit(value.charAt(i), 16);
+            if (digit < 0)
+                return -1;
+            result = (result << 4) | digit;
+        }
+        return result;
+    }
+
+    @Override
+    public int compareTo(JobId other) {
+        int result = Long.compareUnsigned(mostSigBits, other.mostSigBits);
+        return result != 0 ? result : Long.compareUnsigned(leastSigBits, other.leastSigBits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof JobId other
+                && mostSigBits == other.mostSigBits
+                && leastSigBits == other.leastSigBits;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(mostSigBits ^ leastSigBits);
+    }
+
+    @Override
+    public String toString() {
+        // Racy single-check: at worst two threads render the same immutable string
+        String result = rendered;
+        if (result == null) {
+            result = IdGenerator.render(this);
+            rendered = result;
+        }
+        return result;
+    }
+
+}
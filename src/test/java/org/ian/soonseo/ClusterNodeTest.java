@@ -0,0 +1,269 @@
+package org.ian.soonseo;
+
+import org.ian.soonseo.metrics.CapturedClusterMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClusterNodeTest {
+
+    private final List<Queue> queues = new ArrayList<>();
+    private final List<ClusterNode> nodes = new ArrayList<>();
+    // What each member ran, as "args" in the order it ran them
+    private final List<ConcurrentLinkedQueue<String>> ran = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        for (ClusterNode node : nodes)
+            node.close();
+        for (Queue queue : queues)
+            queue.shutdown();
+    }
+
+    // One node per config, all on localhost, each recording the "Record" jobs it runs
+    private void startCluster(Config... configs) throws IOException, InterruptedException {
+        List<InetSocketAddress> members = new ArrayList<>();
+        for (int i = 0; i < configs.length; i++)
+            members.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), freePort()));
+
+        for (int i = 0; i < configs.length; i++) {
+            ConcurrentLinkedQueue<String> log = new ConcurrentLinkedQueue<>();
+            ran.add(log);
+            FunctionRegistry registry = new FunctionRegistry().register("Record", args -> record(log, args));
+            Queue queue = new Queue(configs[i]);
+            queues.add(queue);
+            nodes.add(new ClusterNode(queue, Cluster.of(members, i, registry).withForwardAbove(0.5)).start());
+        }
+        await(() -> nodes.stream().allMatch(node -> node.captureMetrics().livePeers() == configs.length - 1));
+    }
+
+    private static Callable<Object> record(ConcurrentLinkedQueue<String> log, String args) {
+        return () -> log.add(args);
+    }
+
+    private Job recordJob(int member, String args) {
+        return new Job("Record", args, record(ran.get(member), args));
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(5);
+        }
+    }
+
+    private int ranTotal() {
+        return ran.stream().mapToInt(ConcurrentLinkedQueue::size).sum();
+    }
+
+    @Test
+    public void testKeyedJobsRunInOrderOnTheMemberTheyHashTo() throws Exception {
+        Config config = new Config(1024, 2, 3, 100);
+        startCluster(config, config, config);
+
+        ClusterNode entry = nodes.get(0);
+        int keys = 12;
+        int perKey = 50;
+        int remote = 0;
+        for (int seq = 0; seq < perKey; seq++) {
+            for (int k = 0; k < keys; k++) {
+                Job job = recordJob(0, "account-" + k + ":" + seq);
+                job.setPartitionKey("account-" + k);
+                JobHandle<?> handle = entry.submit(job);
+                if (entry.ownerOf("account-" + k) != 0) {
+                    assertNull(handle, "a job owned by a peer is forwarded");
+                    remote++;
+                }
+            }
+        }
+        await(() -> ranTotal() == keys * perKey);
+
+        for (int member = 0; member < nodes.size(); member++) {
+            int[] next = new int[keys];
+            for (String args : ran.get(member)) {
+                String[] parts = args.split(":");
+                int k = Integer.parseInt(parts[0].substring("account-".length()));
+                assertEquals(member, entry.ownerOf(parts[0]), args + " ran on member " + member);
+                assertEquals(next[k]++, Integer.parseInt(parts[1]), "jobs of " + parts[0] + " ran out of order");
+            }
+        }
+
+        CapturedClusterMetrics sent = entry.captureMetrics();
+        assertEquals(remote, sent.forwarded());
+        assertTrue(remote > 0, "some keys hash to a peer");
+        assertEquals(remote, nodes.get(1).captureMetrics().received() + nodes.get(2).captureMetrics().received());
+        assertTrue(sent.bytesSent() > 0);
+    }
+
+    @Test
+    public void testSaturatedMemberForwardsUnkeyedJobsToAPeerWithRoom() throws Exception {
+        startCluster(new Config(8, 1, 0, 1), new Config(1024, 2, 3, 100));
+        ClusterNode saturated = nodes.get(0);
+
+        CountDownLatch release = new CountDownLatch(1);
+        queues.get(0).submit(new Job("Blocking", "", () -> {
+            release.await();
+            return null;
+        }));
+
+        int jobs = 30;
+        int kept = 0;
+        for (int i = 0; i < jobs; i++) {
+            if (saturated.submit(recordJob(0, "job-" + i)) != null)
+                kept++;
+        }
+        int local = kept;
+
+        // Everything past half of the small ring buffer went to the idle peer, which runs it while member 0 is stuck
+        assertTrue(local <= 4, local + " jobs stayed on the saturated member");
+        assertEquals(jobs - local, saturated.captureMetrics().forwarded());
+        await(() -> ran.get(1).size() == jobs - local);
+        assertTrue(ran.get(0).isEmpty());
+
+        release.countDown();
+        await(() -> ranTotal() == jobs);
+        assertEquals(0, nodes.get(1).captureMetrics().dropped());
+    }
+
+    // Member 0 is a node recording what it runs; member 1 is a socket that accepts its connection and never reads,
+    // like a peer stuck in a long pause. Returns the accepted connection once the link has written to it.
+    private SocketChannel startWithSilentPeer(ServerSocketChannel silent, long heartbeatInterval) throws Exception {
+        silent.setOption(StandardSocketOptions.SO_RCVBUF, 4096);
+        silent.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        List<InetSocketAddress> members = List.of(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), freePort()),
+                (InetSocketAddress) silent.getLocalAddress());
+        ran.add(new ConcurrentLinkedQueue<>());
+        Queue queue = new Queue(new Config(65_536, 2, 3, 100));
+        queues.add(queue);
+        ClusterNode entry = new ClusterNode(queue, Cluster.of(members, 0, new FunctionRegistry())
+                .withHeartbeatInterval(heartbeatInterval)).start();
+        nodes.add(entry);
+
+        SocketChannel accepted = silent.accept();
+        await(() -> entry.captureMetrics().bytesSent() > 0);
+        return accepted;
+    }
+
+    // Large enough that the socket buffers fill after a few thousand jobs; only the short name is recorded
+    private Job silentPeerJob(ClusterNode entry, int i) {
+        String key = IntStream.range(0, 100).mapToObj(k -> "key-" + k)
+                .filter(k -> entry.ownerOf(k) == 1).findFirst().orElseThrow();
+        Job job = new Job("Record", i + "x".repeat(2048), record(ran.getFirst(), "job-" + i));
+        job.setPartitionKey(key);
+        return job;
+    }
+
+    @Test
+    public void testJobsBufferedForAPeerThatGoesAwayRunLocally() throws Exception {
+        try (ServerSocketChannel silent = ServerSocketChannel.open()) {
+            SocketChannel accepted = startWithSilentPeer(silent, 1_000);
+            ClusterNode entry = nodes.getFirst();
+
+            // Forward until the socket buffers and the link's backlog are full, so the link turns every job away to
+            // run here, then drop the peer with the backlog still waiting for it
+            int sent = 0;
+            int local = 0;
+            int turnedAway = 0;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (entry.captureMetrics().reclaimed() == 0) {
+                assertTrue(System.nanoTime() < deadline, "the link never noticed the peer was gone");
+                if (entry.submit(silentPeerJob(entry, sent++)) == null) {
+                    turnedAway = 0;
+                    continue;
+                }
+                local++;
+                if (++turnedAway == 20)
+                    accepted.close();
+                Thread.sleep(1);
+            }
+
+            int kept = local;
+            assertEquals(sent - local, entry.captureMetrics().forwarded());
+            await(() -> ran.getFirst().size() == entry.captureMetrics().reclaimed() + kept);
+            assertEquals(0, entry.captureMetrics().dropped());
+        }
+    }
+
+    @Test
+    public void testPeerThatStopsReadingNeverBlocksProducers() throws Exception {
+        try (ServerSocketChannel silent = ServerSocketChannel.open()) {
+            SocketChannel accepted = startWithSilentPeer(silent, 20);
+            ClusterNode entry = nodes.getFirst();
+
+            // Keeps forwarding until the socket buffers and then the link's backlog fill up, and the stalled write
+            // breaks the connection. Every submit returns promptly; jobs the link turns away run here.
+            int local = assertTimeoutPreemptively(Duration.ofSeconds(15), () -> {
+                int kept = 0;
+                for (int i = 0; entry.captureMetrics().reclaimed() == 0; i++) {
+                    if (entry.submit(silentPeerJob(entry, i)) != null)
+                        kept++;
+                }
+                return kept;
+            });
+            assertTrue(local > 0, "jobs for the silent peer ran locally once its backlog was full");
+
+            // The jobs still waiting for the peer when the connection broke run here as well
+            await(() -> ran.getFirst().size() == local + entry.captureMetrics().reclaimed());
+            accepted.close();
+        }
+    }
+
+    @Test
+    public void testFullMemberDropsForwardedJobsInsteadOfBlockingItsReader() throws Exception {
+        Config full = new Config(8, 1, 0, 1).withOverflow(new Overflow(OverflowPolicy.BLOCK, 0, 60_000, null));
+        startCluster(new Config(1024, 2, 3, 100), full);
+
+        CountDownLatch release = new CountDownLatch(1);
+        queues.get(1).submit(new Job("Blocking", "", () -> {
+            release.await();
+            return null;
+        }));
+
+        int jobs = 30;
+        ClusterNode entry = nodes.get(0);
+        for (int i = 0, sent = 0; sent < jobs; i++) {
+            if (entry.ownerOf("key-" + i) != 1)
+                continue;
+            Job job = recordJob(0, "job-" + i);
+            job.setPartitionKey("key-" + i);
+            assertNull(entry.submit(job));
+            sent++;
+        }
+
+        // A blocking submit would hold the reader for the whole block timeout; instead every frame is read at once
+        ClusterNode full1 = nodes.get(1);
+        await(() -> full1.captureMetrics().received() == jobs);
+        long dropped = full1.captureMetrics().dropped();
+        assertTrue(dropped > 0, "the full member dropped some forwarded jobs");
+
+        release.countDown();
+        await(() -> ran.get(1).size() == jobs - dropped);
+    }
+
+}
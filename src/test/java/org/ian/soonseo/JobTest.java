@@ -47,4 +47,12 @@ public class JobTest {
         assertThrows(RuntimeException.class, jobWithError::run);
         assertEquals(JobStatus.QUEUED, jobWithError.getStatus());
     }
+
+    @Test
+    public void testCallableJob() throws Exception {
+        Job callableJob = new Job("CallableFunction", SAMPLE_ARGS, () -> "result");
+
+        assertEquals("result", callableJob.call());
+        assertEquals(JobStatus.QUEUED, callableJob.getStatus());
+    }
 }
@@ -0,0 +1,163 @@
+package org.ian.soonseo;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsReporterTest {
+
+    private Queue queue;
+
+    @BeforeEach
+    public void setup() {
+        queue = new Queue(new Config(1024, 2, 3, 100));
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        queue.shutdown();
+    }
+
+    @Test
+    public void testRingKeepsMostRecentSamples() throws Exception {
+        MetricsReporter reporter = new MetricsReporter(queue, 4, 1_000);
+        for (int i = 1; i <= 6; i++) {
+            queue.submit("SampleFunction", "arg" + i, () -> null).get(5, TimeUnit.SECONDS);
+            reporter.sampleNow();
+        }
+
+        MetricsSample[] history = new MetricsSample[8];
+        for (int i = 0; i < history.length; i++)
+            history[i] = new MetricsSample();
+        assertEquals(4, reporter.history(history));
+        for (int i = 0; i < 4; i++)
+            assertEquals(i + 3, history[i].queued());
+
+        MetricsSample latest = new MetricsSample();
+        assertTrue(reporter.latest(latest));
+        assertEquals(6, latest.queued());
+        assertEquals(1024, latest.bufferSize());
+        assertEquals(6, reporter.getSampleCount());
+
+        assertEquals(2, latest.workers());
+        long completed = 0;
+        long executions = 0;
+        for (int i = 0; i < latest.workers(); i++) {
+            assertEquals(queue.getWorkers().get(i).getWorkerId(), latest.worker(i).workerId());
+            completed += latest.worker(i).completed();
+            executions += latest.worker(i).execution().count();
+        }
+        assertEquals(6, completed);
+        assertEquals(6, executions);
+        assertThrows(IndexOutOfBoundsException.class, () -> latest.worker(2));
+    }
+
+    @Test
+    public void testSamplesOnInterval() throws Exception {
+        try (MetricsReporter reporter = new MetricsReporter(queue, 16, 5).start()) {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (reporter.getSampleCount() < 3 && System.nanoTime() < deadline)
+                Thread.sleep(5);
+            assertTrue(reporter.getSampleCount() >= 3);
+        }
+    }
+
+    @Test
+    public void testCloseStopsSampling() throws Exception {
+        MetricsReporter reporter = new MetricsReporter(queue, 16, 1).start();
+        while (reporter.getSampleCount() == 0)
+            Thread.sleep(1);
+        reporter.close();
+
+        long taken = reporter.getSampleCount();
+        Thread.sleep(20);
+        assertEquals(taken, reporter.getSampleCount());
+    }
+
+    @Test
+    public void testPrometheusEndpoint() throws Exception {
+        for (int i = 0; i < 3; i++)
+            queue.submit("Export\"Function", "arg" + i, () -> null).get(5, TimeUnit.SECONDS);
+
+        try (MetricsReporter reporter = new MetricsReporter(queue, 4, 1_000)) {
+            reporter.serve(new InetSocketAddress("localhost", 0));
+            reporter.sampleNow();
+
+            URI uri = URI.create("http://localhost:" + reporter.getAddress().getPort() + "/metrics");
+            HttpResponse<String> response = HttpClient.newHttpClient()
+                    .send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofString());
+
+            assertEquals(200, response.statusCode());
+            assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("text/plain; version=0.0.4"));
+            String body = response.body();
+            assertTrue(body.contains("# TYPE soonseo_jobs_completed_total counter\nsoonseo_jobs_completed_total 3\n"), body);
+            assertTrue(body.contains("soonseo_buffer_size 1024\n"), body);
+            assertTrue(body.contains("soonseo_job_execution_seconds_count{function=\"Export\\\"Function\"} 3\n"), body);
+            assertTrue(body.contains("soonseo_job_execution_seconds_sum{function=\"Export\\\"Function\"} "), body);
+            String worker = queue.getWorkers().getFirst().getWorkerId();
+            assertTrue(body.contains("soonseo_worker_execution_seconds_sum{worker=\"" + worker + "\"} "), body);
+            long workerCompleted = queue.getWorkers().stream().mapToLong(Worker::getCompletedJobs).sum();
+            assertEquals(3, workerCompleted);
+            assertTrue(body.contains("soonseo_worker_jobs_completed_total{worker=\"" + worker + "\"} "
+                    + queue.getWorkers().getFirst().getCompletedJobs() + "\n"), body);
+        }
+    }
+
+    @Test
+    public void testFlightRecorderEvents(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("soonseo.jfr");
+        Queue smallQueue = new Queue(new Config(2, 1, 0, 10));
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (Recording recording = new Recording()) {
+            for (String event : List.of("JobStarted", "JobCompleted", "JobRejected", "BufferSaturated"))
+                recording.enable("org.ian.soonseo." + event);
+            recording.start();
+
+            queue.submit("RecordedFunction", "arg", () -> "ok").get(5, TimeUnit.SECONDS);
+            smallQueue.submit(new Job("BlockingFunction", "arg", () -> {
+                release.await();
+                return null;
+            }));
+            smallQueue.submit(new Job("SampleFunction", "arg", () -> {}));
+            assertThrows(RejectedExecutionException.class, () -> smallQueue.submit(new Job("SampleFunction", "arg", () -> {})));
+
+            recording.stop();
+            recording.dump(file);
+        } finally {
+            release.countDown();
+            smallQueue.shutdown();
+        }
+
+        Map<String, List<RecordedEvent>> events = RecordingFile.readAllEvents(file).stream()
+                .collect(Collectors.groupingBy(event -> event.getEventType().getName()));
+        RecordedEvent completed = events.get("org.ian.soonseo.JobCompleted").stream()
+                .filter(event -> "RecordedFunction".equals(event.getString("function")))
+                .findFirst()
+                .orElseThrow();
+        assertEquals("COMPLETED", completed.getString("status"));
+        assertTrue(events.get("org.ian.soonseo.JobStarted").size() >= 2);
+        assertEquals(1, events.get("org.ian.soonseo.JobRejected").size());
+        assertEquals(2, events.get("org.ian.soonseo.BufferSaturated").getFirst().getInt("bufferSize"));
+    }
+
+}
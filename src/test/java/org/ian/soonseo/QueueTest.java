@@ -1,14 +1,35 @@
 package org.ian.soonseo;
 
+import com.lmax.disruptor.EventTranslatorTwoArg;
+import com.lmax.disruptor.dsl.ProducerType;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.ian.soonseo.exception.JobProcessingException;
+import org.ian.soonseo.metrics.CapturedFunctionMetrics;
 import org.ian.soonseo.metrics.CapturedJobMetrics;
+import org.ian.soonseo.metrics.CapturedLaneMetrics;
+import org.ian.soonseo.metrics.CapturedLimiterMetrics;
 import org.ian.soonseo.metrics.CapturedQueueMetrics;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -23,6 +44,21 @@ public class QueueTest {
         queue = new Queue(new Config(1024, 2, 3, 100));
     }
 
+    @AfterEach
+    public void tearDown() throws Exception {
+        queue.shutdown();
+    }
+
+    private static Job blockingJob(CountDownLatch release) {
+        return new Job("BlockingFunction", "arg", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
     @Test
     public void testJobSubmission() {
         Job job = new Job("SampleFunction", "arg1,arg2", () -> logger.info("Job executed"));
@@ -49,7 +85,7 @@ public class QueueTest {
     }
 
     @Test
-    public void testQueueRetryAndRejection() {
+    public void testQueueRetryAndRejection() throws Exception {
         Config config = new Config(1, 2, 3, 100);
         Queue smallQueue = new Queue(config);
 
@@ -64,10 +100,11 @@ public class QueueTest {
         CapturedQueueMetrics metrics = smallQueue.captureQueueMetrics();
         assertNotNull(metrics);
         assertEquals(2, metrics.queued());
+        smallQueue.shutdown();
     }
 
     @Test
-    public void testJobDiscardAfterMaxRetries() {
+    public void testJobDiscardAfterMaxRetries() throws Exception {
         Config config = new Config(1, 2, 3, 50);
         Queue smallQueue = new Queue(config);
 
@@ -82,8 +119,1065 @@ public class QueueTest {
         List<CapturedJobMetrics> jobMetrics = smallQueue.captureJobMetrics();
         assertEquals(1, jobMetrics.size());
         assertEquals("SampleFunction1", jobMetrics.getFirst().function());
+        smallQueue.shutdown();
+    }
+
+    @Test
+    public void testParallelDispatch() throws Exception {
+        Queue parallelQueue = new Queue(new Config(1024, 4, 3, 100).withDispatchMode(DispatchMode.PARALLEL));
+        CountDownLatch latch = new CountDownLatch(4);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            parallelQueue.submit(new Job("SlowFunction", "arg" + i, () -> {
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                latch.countDown();
+            }));
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMillis < 1000, "Jobs should run concurrently but took " + elapsedMillis + "ms");
+        parallelQueue.shutdown();
+    }
+
+    @Test
+    public void testWorkStealingAvoidsHeadOfLineBlocking() throws Exception {
+        Queue stealingQueue = new Queue(new Config(1024, 2, 3, 100).withDispatchMode(DispatchMode.WORK_STEALING));
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        stealingQueue.submit(new Job("LongFunction", "arg", () -> {
+            started.countDown();
+            release.await();
+            return null;
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // Round-robin routes every other job to the blocked worker; the idle one has to steal them
+        List<JobHandle<?>> handles = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+            handles.add(stealingQueue.submit(new Job("ShortFunction", "arg" + i, () -> {})));
+        for (JobHandle<?> handle : handles)
+            handle.get(5, TimeUnit.SECONDS);
+        assertEquals(20, stealingQueue.getWorkers().stream().mapToLong(Worker::getCompletedJobs).sum());
+
+        release.countDown();
+        assertThrows(IllegalArgumentException.class, () -> new Config(1024, 2, 3, 100)
+                .withDispatchMode(DispatchMode.WORK_STEALING)
+                .withExecutionMode(ExecutionMode.VIRTUAL_THREAD));
+        stealingQueue.shutdown();
+    }
+
+    @Test
+    public void testPartitionKeyOrdering() throws Exception {
+        Queue keyedQueue = new Queue(new Config(1024, 4, 3, 100)
+                .withExecutionMode(ExecutionMode.VIRTUAL_THREAD));
+        int keys = 8;
+        int perKey = 200;
+        List<List<Integer>> ran = new ArrayList<>();
+        for (int k = 0; k < keys; k++)
+            ran.add(Collections.synchronizedList(new ArrayList<>()));
+
+        List<JobHandle<?>> handles = new ArrayList<>();
+        for (int i = 0; i < perKey; i++) {
+            for (int k = 0; k < keys; k++) {
+                int index = i;
+                List<Integer> sink = ran.get(k);
+                Job job = new Job("KeyedFunction", "arg" + i, () -> {
+                    if (index % 50 == 0)
+                        Thread.sleep(1);
+                    sink.add(index);
+                    return null;
+                });
+                job.setPartitionKey("account-" + k);
+                handles.add(keyedQueue.submit(job));
+            }
+        }
+        for (JobHandle<?> handle : handles)
+            handle.get(5, TimeUnit.SECONDS);
+
+        for (List<Integer> sink : ran)
+            assertEquals(IntStream.range(0, perKey).boxed().toList(), sink);
+        keyedQueue.shutdown();
+    }
+
+    @Test
+    public void testVirtualThreadExecution() throws Exception {
+        Config config = new Config(1024, 1, 3, 100)
+                .withExecutionMode(ExecutionMode.VIRTUAL_THREAD)
+                .withMaxInFlight(100);
+        Queue virtualQueue = new Queue(config);
+        CountDownLatch latch = new CountDownLatch(50);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 50; i++) {
+            virtualQueue.submit(new Job("BlockingFunction", "arg" + i, () -> {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                latch.countDown();
+            }));
+        }
+        virtualQueue.submit(new Job("FailingFunction", "arg", () -> {
+            throw new RuntimeException("Job failure simulation");
+        }));
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMillis < 2000, "Blocking jobs should not stall the consumer but took " + elapsedMillis + "ms");
+
+        Thread.sleep(200);
+        Worker worker = virtualQueue.getWorkers().getFirst();
+        assertEquals(50, worker.getCompletedJobs());
+        assertEquals(1, worker.getFailedJobs());
+        assertEquals(0, virtualQueue.getInFlightJobs());
+        virtualQueue.shutdown();
+    }
+
+    @Test
+    public void testWaitStrategies() throws Exception {
+        for (WaitStrategyType waitStrategy : WaitStrategyType.values()) {
+            // Busy-spinning consumers would starve the remaining tests on small CI machines
+            if (waitStrategy == WaitStrategyType.BUSY_SPIN)
+                continue;
+
+            Queue strategyQueue = new Queue(new Config(1024, 2, 3, 100)
+                    .withWaitStrategy(waitStrategy)
+                    .withProducerType(ProducerType.SINGLE));
+            CountDownLatch latch = new CountDownLatch(100);
+
+            for (int i = 0; i < 100; i++)
+                strategyQueue.submit(new Job("SampleFunction", "arg" + i, latch::countDown));
+
+            assertTrue(latch.await(5, TimeUnit.SECONDS), "Jobs did not complete with " + waitStrategy);
+            strategyQueue.shutdown();
+        }
+    }
+
+    @Test
+    public void testBatchSubmission() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(100);
+        List<Job> jobs = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+            jobs.add(new Job("SampleFunction", "arg" + i, latch::countDown));
+
+        BatchSubmitResult result = queue.submitAll(jobs);
+
+        assertTrue(result.isFullyAccepted());
+        assertEquals(100, result.accepted());
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(100, queue.captureQueueMetrics().queued());
+    }
+
+    @Test
+    public void testBatchPartialAcceptance() throws Exception {
+        Queue smallQueue = new Queue(new Config(8, 1, 0, 10));
+        CountDownLatch release = new CountDownLatch(1);
+
+        Job[] jobs = new Job[20];
+        jobs[0] = new Job("BlockingFunction", "arg0", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        for (int i = 1; i < jobs.length; i++)
+            jobs[i] = new Job("SampleFunction", "arg" + i, () -> {});
+
+        BatchSubmitResult result = smallQueue.submit(jobs);
+        release.countDown();
+
+        assertFalse(result.isFullyAccepted());
+        assertEquals(8, result.accepted());
+        assertEquals(12, result.rejected().size());
+        assertSame(jobs[8], result.rejected().getFirst());
+        assertEquals(8, smallQueue.captureJobMetrics().size());
+        smallQueue.shutdown();
+    }
+
+    @Test
+    public void testAsyncSubmitCompletesWhenSlotFrees() throws Exception {
+        Queue smallQueue = new Queue(new Config(2, 1, 0, 10));
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch executed = new CountDownLatch(1);
+
+        smallQueue.submit(blockingJob(release));
+        smallQueue.submit(new Job("SampleFunction1", "arg1", () -> {}));
+        CompletableFuture<Void> future = smallQueue.submitAsync(new Job("SampleFunction2", "arg2", executed::countDown));
+
+        assertFalse(future.isDone());
+        assertEquals(1, smallQueue.captureQueueMetrics().overflow());
+
+        release.countDown();
+        future.get(5, TimeUnit.SECONDS);
+        assertTrue(executed.await(5, TimeUnit.SECONDS));
+        assertEquals(0, smallQueue.captureQueueMetrics().overflow());
+        smallQueue.shutdown();
+    }
+
+    @Test
+    public void testSyncSubmitQueuesBehindOverflow() throws Exception {
+        Queue smallQueue = new Queue(new Config(2, 1, 0, 10));
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        smallQueue.submit(blockingJob(release));
+        smallQueue.submit(new Job("SampleFunction1", "arg1", () -> {}));
+        smallQueue.submitAsync(new Job("Waiting", "arg", () -> order.add("async")));
+        // A slot may free up meanwhile, but the job already waiting keeps its place
+        JobHandle<?> sync = smallQueue.submit(new Job("Later", "arg", () -> order.add("sync")));
+        assertEquals(2, smallQueue.captureQueueMetrics().overflow());
+
+        release.countDown();
+        sync.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("async", "sync"), order);
+        smallQueue.shutdown();
+    }
+
+    @Test
+    public void testBatchQueuesBehindOverflow() throws Exception {
+        Queue smallQueue = new Queue(new Config(2, 1, 0, 10));
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        smallQueue.submit(blockingJob(release));
+        smallQueue.submit(new Job("SampleFunction1", "arg1", () -> {}));
+        smallQueue.submitAsync(new Job("Waiting", "arg", () -> order.add("async")));
+        Job[] batch = {
+                new Job("Batched", "0", () -> order.add("batch0")),
+                new Job("Batched", "1", () -> order.add("batch1"))
+        };
+        BatchSubmitResult result = smallQueue.submit(batch);
+        assertTrue(result.isFullyAccepted());
+        assertEquals(3, smallQueue.captureQueueMetrics().overflow());
+
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (order.size() < 3 && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        assertEquals(List.of("async", "batch0", "batch1"), order);
+        smallQueue.shutdown();
+    }
+
+    @Test
+    public void testDropOldestOverflow() throws Exception {
+        Queue smallQueue = new Queue(new Config(2, 1, 0, 10).withOverflow(Overflow.dropOldest(1)));
+        CountDownLatch release = new CountDownLatch(1);
+
+        smallQueue.submit(blockingJob(release));
+        smallQueue.submit(new Job("SampleFunction1", "arg1", () -> {}));
+        CompletableFuture<Void> oldest = smallQueue.submitAsync(new Job("SampleFunction2", "arg2", () -> {}));
+        CompletableFuture<Void> newest = smallQueue.submitAsync(new Job("SampleFunction3", "arg3", () -> {}));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> oldest.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+
+        release.countDown();
+        newest.get(5, TimeUnit.SECONDS);
+        assertEquals(1, smallQueue.captureQueueMetrics().rejected());
+        smallQueue.shutdown();
+    }
+
+    @Test
+    public void testSpillOverflow() throws Exception {
+        java.util.Queue<Job> secondary = new ConcurrentLinkedQueue<>();
+        Queue smallQueue = new Queue(new Config(2, 1, 0, 10).withOverflow(Overflow.spill(0, secondary::add)));
+        CountDownLatch release = new CountDownLatch(1);
+
+        smallQueue.submit(blockingJob(release));
+        smallQueue.submit(new Job("SampleFunction1", "arg1", () -> {}));
+        Job spilled = new Job("SampleFunction2", "arg2", () -> {});
+        smallQueue.submitAsync(spilled).get(1, TimeUnit.SECONDS);
+
+        assertSame(spilled, secondary.poll());
+        release.countDown();
+        smallQueue.shutdown();
+    }
+
+    @Test
+    public void testBlockingOverflow() throws Exception {
+        Queue smallQueue = new Queue(new Config(2, 1, 0, 10).withOverflow(Overflow.block(5_000)));
+        CountDownLatch release = new CountDownLatch(1);
+
+        smallQueue.submit(blockingJob(release));
+        smallQueue.submit(new Job("SampleFunction1", "arg1", () -> {}));
+        Thread.ofVirtual().start(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            release.countDown();
+        });
+
+        assertDoesNotThrow(() -> smallQueue.submit(new Job("SampleFunction2", "arg2", () -> {})));
+        assertEquals(3, smallQueue.captureQueueMetrics().queued());
+        smallQueue.getWorkers().forEach(worker -> assertEquals(0, worker.getRetriedJobs()));
+        smallQueue.shutdown();
+    }
+
+    @Test
+    public void testJobHandleReturnsResult() throws Exception {
+        JobHandle<Integer> handle = queue.submit("SumFunction", "1,2", () -> 1 + 2);
+
+        assertEquals(3, handle.get(5, TimeUnit.SECONDS));
+        assertEquals(JobStatus.COMPLETED, handle.getStatus());
+        assertTrue(handle.isDone());
+    }
+
+    @Test
+    public void testJobHandlePropagatesFailure() {
+        JobHandle<?> handle = queue.submit(new Job("FailingFunction", "arg1,arg2", () -> {
+            throw new IllegalStateException("Job failure simulation");
+        }));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> handle.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(JobProcessingException.class, e.getCause());
+        assertInstanceOf(IllegalStateException.class, e.getCause().getCause());
+        assertEquals(JobStatus.FAILED, handle.getStatus());
     }
 
+    @Test
+    public void testJobHandleAfterCompletion() throws Exception {
+        JobHandle<?> handle = queue.submit(new Job("SampleFunction", "arg1,arg2", () -> logger.info("Job executed")));
+        while (!handle.isDone())
+            Thread.sleep(10);
+
+        assertNull(handle.toCompletableFuture().get(1, TimeUnit.SECONDS));
+    }
+
+
+    @Test
+    public void testJobRetriesUntilSuccess() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        Job job = new Job("FlakyFunction", "arg1,arg2", () -> {
+            if (calls.incrementAndGet() < 3)
+                throw new IllegalStateException("Transient failure");
+            return "ok";
+        });
+        job.setRetryPolicy(RetryPolicy.exponential(3, 10, 100));
+
+        JobHandle<?> handle = queue.submit(job);
+
+        assertEquals("ok", handle.get(5, TimeUnit.SECONDS));
+        assertEquals(3, job.getAttempts());
+        assertEquals(JobStatus.COMPLETED, handle.getStatus());
+        assertEquals(2, queue.getWorkers().stream().mapToLong(Worker::getRetriedJobs).sum());
+    }
+
+    @Test
+    public void testJobFailsAfterRetriesExhausted() throws Exception {
+        Job job = new Job("FailingFunction", "arg1,arg2", () -> {
+            throw new IllegalStateException("Permanent failure");
+        });
+        job.setRetryPolicy(RetryPolicy.exponential(2, 5, 20));
+
+        JobHandle<?> handle = queue.submit(job);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> handle.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, e.getCause().getCause());
+        assertEquals(3, job.getAttempts());
+        assertEquals(JobStatus.FAILED, handle.getStatus());
+
+        // The consumer that saw the failures keeps processing
+        assertEquals("next", queue.submit("NextFunction", "arg1", () -> "next").get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testSingleProducerQueueRefusesJobsWithRetries() throws Exception {
+        Queue singleProducer = new Queue(new Config(1024, 1, 3, 100).withProducerType(ProducerType.SINGLE));
+        Job job = new Job("FlakyFunction", "arg1", () -> "ok");
+        job.setRetryPolicy(RetryPolicy.exponential(3, 10, 100));
+
+        assertThrows(UnsupportedOperationException.class, () -> singleProducer.submit(job));
+        assertThrows(UnsupportedOperationException.class, () -> singleProducer.submit(new Job[]{job}));
+        assertEquals("ok", singleProducer.submit("PlainFunction", "arg1", () -> "ok").get(5, TimeUnit.SECONDS));
+        singleProducer.shutdown();
+    }
+
+    @Test
+    public void testRetryDelayBackoff() {
+        RetryPolicy policy = RetryPolicy.exponential(5, 10, 50).withJitter(0.0);
+
+        assertEquals(10, policy.delayFor(1));
+        assertEquals(20, policy.delayFor(2));
+        assertEquals(40, policy.delayFor(3));
+        assertEquals(50, policy.delayFor(4));
+
+        long jittered = policy.withJitter(0.5).delayFor(2);
+        assertTrue(jittered > 10 && jittered <= 20);
+    }
+
+    @Test
+    public void testScheduledJobRunsAfterDelay() throws Exception {
+        Job job = new Job("DelayedFunction", "arg1", () -> System.nanoTime());
+        long scheduledAt = System.nanoTime();
+        ScheduledJob timer = queue.schedule(job, 50);
+
+        assertEquals(JobStatus.SCHEDULED, job.getStatus());
+        assertEquals(1, queue.captureQueueMetrics().scheduled());
+
+        long ranAt = (Long) timer.getHandle().get(5, TimeUnit.SECONDS);
+        assertTrue(ranAt - scheduledAt >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(timer.isDone());
+        assertEquals(0, queue.captureQueueMetrics().scheduled());
+    }
+
+    @Test
+    public void testCancelScheduledJob() throws Exception {
+        CountDownLatch ran = new CountDownLatch(1);
+        ScheduledJob timer = queue.schedule(new Job("DelayedFunction", "arg1", ran::countDown), 50);
+
+        assertTrue(timer.cancel());
+        assertFalse(timer.cancel());
+        assertTrue(timer.isCancelled());
+        assertThrows(CancellationException.class, () -> timer.getHandle().join());
+        assertEquals(0, queue.captureQueueMetrics().scheduled());
+        assertFalse(ran.await(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testRecurringSchedule() throws Exception {
+        CountDownLatch runs = new CountDownLatch(3);
+        ScheduledJob timer = queue.scheduleAtFixedRate("RecurringFunction", "arg1", () -> {
+            runs.countDown();
+            return null;
+        }, 10, 20);
+
+        assertTrue(timer.isRecurring());
+        assertTrue(runs.await(5, TimeUnit.SECONDS));
+        assertEquals(1, queue.captureQueueMetrics().scheduled());
+
+        assertTrue(timer.cancel());
+        assertEquals(0, queue.captureQueueMetrics().scheduled());
+    }
+
+    @Test
+    public void testManyPendingTimers() throws Exception {
+        int count = 100_000;
+        List<ScheduledJob> timers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            timers.add(queue.schedule(new Job("DelayedFunction", "arg" + i, () -> {}), 60_000 + i));
+
+        assertEquals(count, queue.captureQueueMetrics().scheduled());
+        timers.forEach(ScheduledJob::cancel);
+        assertEquals(0, queue.captureQueueMetrics().scheduled());
+    }
+
+    @Test
+    public void testStrictPriorityLanes() throws Exception {
+        Queue laneQueue = new Queue(new Config(1024, 1, 3, 100).withPriorityLanes(PriorityLanes.strict()));
+        CountDownLatch release = new CountDownLatch(1);
+        ConcurrentLinkedQueue<String> order = new ConcurrentLinkedQueue<>();
+
+        Job blocker = blockingJob(release);
+        blocker.setPriority(Priority.LOW);
+        laneQueue.submit(blocker);
+        List<JobHandle<?>> handles = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Job bulk = new Job("BulkFunction", "arg" + i, () -> order.add("low"));
+            bulk.setPriority(Priority.LOW);
+            handles.add(laneQueue.submit(bulk));
+        }
+        Job urgent = new Job("UrgentFunction", "arg", () -> order.add("high"));
+        urgent.setPriority(Priority.HIGH);
+        handles.add(laneQueue.submit(urgent));
+        assertEquals(1, laneQueue.captureLaneMetrics().get(Priority.HIGH.ordinal()).depth());
+
+        release.countDown();
+        for (JobHandle<?> handle : handles)
+            handle.get(5, TimeUnit.SECONDS);
+
+        assertEquals("high", order.peek());
+        List<CapturedLaneMetrics> lanes = laneQueue.captureQueueMetrics().lanes();
+        assertEquals(Priority.values().length, lanes.size());
+        assertEquals(1, lanes.get(Priority.HIGH.ordinal()).queueWait().count());
+        assertEquals(21, lanes.get(Priority.LOW.ordinal()).queueWait().count());
+        laneQueue.shutdown();
+    }
+
+    @Test
+    public void testWeightedPriorityLanes() throws Exception {
+        Queue laneQueue = new Queue(new Config(1024, 2, 3, 100).withPriorityLanes(PriorityLanes.weighted(8, 4, 1)));
+        CountDownLatch latch = new CountDownLatch(300);
+        for (int i = 0; i < 300; i++) {
+            Job job = new Job("SampleFunction", "arg" + i, latch::countDown);
+            job.setPriority(Priority.values()[i % 3]);
+            laneQueue.submit(job);
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        for (CapturedLaneMetrics lane : laneQueue.captureLaneMetrics())
+            assertEquals(100, lane.queueWait().count());
+        assertTrue(queue.captureLaneMetrics().isEmpty());
+        laneQueue.shutdown();
+    }
+
+    @Test
+    public void testLatencyHistograms() throws Exception {
+        List<JobHandle<?>> handles = new ArrayList<>();
+        for (int i = 0; i < 50; i++)
+            handles.add(queue.submit(new Job("FastFunction", "arg" + i, () -> {})));
+        handles.add(queue.submit(new Job("SlowFunction", "arg", () -> {
+            Thread.sleep(20);
+            return null;
+        })));
+        for (JobHandle<?> handle : handles)
+            handle.get(5, TimeUnit.SECONDS);
+
+        CapturedFunctionMetrics slow = queue.captureFunctionMetrics("SlowFunction");
+        assertEquals(1, slow.execution().count());
+        assertTrue(slow.execution().p50() >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertEquals(slow.execution().max(), slow.execution().p999());
+        assertEquals(50, queue.captureFunctionMetrics("FastFunction").queueWait().count());
+        assertNull(queue.captureFunctionMetrics("UnknownFunction"));
+        assertEquals(2, queue.captureFunctionMetrics().size());
+
+        long executions = queue.captureWorkerMetrics().stream().mapToLong(worker -> worker.execution().count()).sum();
+        assertEquals(51, executions);
+    }
+
+    @Test
+    public void testFunctionsPastTheCapShareOneHistogram() {
+        FunctionMetrics metrics = new FunctionMetrics(2);
+        for (int i = 0; i < 10; i++)
+            metrics.record("Function" + (i % 5), 1_000, 2_000);
+
+        assertEquals(3, metrics.capture().size());
+        assertEquals(2, metrics.capture("Function0").execution().count());
+        assertEquals(2, metrics.capture("Function1").execution().count());
+        assertNull(metrics.capture("Function2"));
+        assertEquals(6, metrics.capture(FunctionMetrics.OTHER).execution().count());
+    }
+
+    @Test
+    public void testConcurrentProducerCounts() throws Exception {
+        int producers = 8;
+        int perProducer = 500;
+        CountDownLatch done = new CountDownLatch(producers * perProducer);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < perProducer; i++)
+                    queue.submit(new Job("CountedFunction", "arg" + i, done::countDown));
+            }));
+        }
+
+        while (done.getCount() > 0) {
+            CapturedQueueMetrics snapshot = queue.captureQueueMetrics();
+            assertTrue(snapshot.completed() + snapshot.failed() <= snapshot.queued(), snapshot.toString());
+            Thread.sleep(1);
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        // The latch counts down inside the job, just before the worker records it as completed
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queue.captureQueueMetrics().completed() < producers * perProducer && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        CapturedQueueMetrics metrics = queue.captureQueueMetrics();
+        assertEquals(producers * perProducer, metrics.queued());
+        assertEquals(producers * perProducer, metrics.completed());
+        assertEquals(0, metrics.failed());
+    }
+
+    @Test
+    public void testResizeWhileSubmitting() throws Exception {
+        resizeWhileSubmitting(DispatchMode.PARALLEL);
+    }
+
+    @Test
+    public void testWorkStealingResizeWhileSubmitting() throws Exception {
+        resizeWhileSubmitting(DispatchMode.WORK_STEALING);
+    }
+
+    private static void resizeWhileSubmitting(DispatchMode dispatchMode) throws Exception {
+        Queue resizable = new Queue(new Config(64, 1, Integer.MAX_VALUE, 1).withDispatchMode(dispatchMode));
+        int jobs = 5_000;
+        AtomicIntegerArray runs = new AtomicIntegerArray(jobs);
+        List<JobHandle<?>> handles = new ArrayList<>(jobs);
+
+        Thread producer = Thread.ofPlatform().start(() -> {
+            for (int i = 0; i < jobs; i++) {
+                int index = i;
+                handles.add(resizable.submit(new Job("CountedFunction", "arg" + i, () -> runs.incrementAndGet(index))));
+            }
+        });
+        for (int i = 0; i < 3; i++) {
+            resizable.addWorker();
+            Thread.sleep(2);
+        }
+        assertNotNull(resizable.removeWorker());
+        Thread.sleep(2);
+        assertNotNull(resizable.removeWorker());
+        producer.join();
+
+        for (JobHandle<?> handle : handles)
+            handle.get(5, TimeUnit.SECONDS);
+        for (int i = 0; i < jobs; i++)
+            assertEquals(1, runs.get(i), "job " + i + " ran " + runs.get(i) + " times");
+        assertEquals(2, resizable.getWorkerCount());
+        assertEquals(jobs, resizable.captureQueueMetrics().completed());
+        resizable.shutdown();
+    }
+
+    @Test
+    public void testPartitionOrderAcrossResize() throws Exception {
+        partitionOrderAcrossResize(DispatchMode.PARALLEL);
+    }
+
+    @Test
+    public void testWorkStealingPartitionOrderAcrossResize() throws Exception {
+        partitionOrderAcrossResize(DispatchMode.WORK_STEALING);
+    }
+
+    private static void partitionOrderAcrossResize(DispatchMode dispatchMode) throws Exception {
+        Queue resizable = new Queue(new Config(64, 2, Integer.MAX_VALUE, 1).withDispatchMode(dispatchMode));
+        int keys = 16;
+        int jobs = 4_000;
+        int[] last = new int[keys];
+        Arrays.fill(last, -1);
+        AtomicInteger outOfOrder = new AtomicInteger();
+        List<JobHandle<?>> handles = new ArrayList<>(jobs);
+
+        Thread producer = Thread.ofPlatform().start(() -> {
+            for (int i = 0; i < jobs; i++) {
+                int key = i % keys;
+                int index = i;
+                Job job = new Job("KeyedFunction", "arg" + i, () -> {
+                    // Jobs of one key never overlap, so this plain read-modify-write is safe
+                    if (last[key] > index)
+                        outOfOrder.incrementAndGet();
+                    last[key] = index;
+                    if (index % 97 == 0)
+                        LockSupport.parkNanos(200_000);
+                });
+                job.setPartitionKey("account-" + key);
+                handles.add(resizable.submit(job));
+            }
+        });
+        for (int i = 0; i < 4; i++) {
+            resizable.addWorker();
+            Thread.sleep(2);
+            if (i % 2 == 1)
+                resizable.removeWorker();
+        }
+        producer.join();
+
+        for (JobHandle<?> handle : handles)
+            handle.get(5, TimeUnit.SECONDS);
+        assertEquals(0, outOfOrder.get());
+        assertEquals(jobs, resizable.captureQueueMetrics().completed());
+        resizable.shutdown();
+    }
+
+    @Test
+    public void testSerialResize() throws Exception {
+        Queue serial = new Queue(new Config(1024, 1, 3, 100).withDispatchMode(DispatchMode.SERIAL));
+        Worker added = serial.addWorker();
+        for (int i = 0; i < 10; i++)
+            serial.submit(new Job("SampleFunction", "arg" + i, () -> {})).get(5, TimeUnit.SECONDS);
+
+        assertEquals(5, added.getCompletedJobs());
+        assertSame(added, serial.removeWorker());
+        assertNull(serial.removeWorker());
+        serial.submit(new Job("SampleFunction", "arg", () -> {})).get(5, TimeUnit.SECONDS);
+        assertEquals(5, added.getCompletedJobs());
+        serial.shutdown();
+    }
+
+    @Test
+    public void testAutoScalerDecisions() throws Exception {
+        Queue small = new Queue(new Config(8, 1, 0, 10));
+        AutoScaler scaler = new AutoScaler(small, AutoScaling.between(1, 2).withScaleDown(0.05, 1_000));
+        CountDownLatch release = new CountDownLatch(1);
+
+        small.submit(blockingJob(release));
+        for (int i = 0; i < 5; i++)
+            small.submit(new Job("SampleFunction", "arg" + i, () -> {}));
+        long now = System.nanoTime();
+        assertEquals(1, scaler.tick(now));
+        assertEquals(0, scaler.tick(now), "already at maxWorkers");
+        assertEquals(2, small.getWorkerCount());
+
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (small.bufferUtilization() > 0 && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        assertEquals(0, scaler.tick(now + TimeUnit.MILLISECONDS.toNanos(500)), "calm, but not for long enough");
+        assertEquals(-1, scaler.tick(now + TimeUnit.MILLISECONDS.toNanos(1_000)));
+        assertEquals(0, scaler.tick(now + TimeUnit.MILLISECONDS.toNanos(5_000)), "already at minWorkers");
+        assertEquals(1, small.getWorkerCount());
+        small.shutdown();
+    }
+
+    @Test
+    public void testAutoScalingConfig() {
+        assertThrows(IllegalArgumentException.class, () -> new Config(1024, 8, 3, 100).withAutoScaling(AutoScaling.between(1, 4)));
+        assertThrows(IllegalArgumentException.class, () -> new Config(1024, 2, 3, 100)
+                .withPriorityLanes(PriorityLanes.strict())
+                .withAutoScaling(AutoScaling.between(1, 4)));
+        Queue laneQueue = new Queue(new Config(1024, 2, 3, 100).withPriorityLanes(PriorityLanes.strict()));
+        assertThrows(UnsupportedOperationException.class, laneQueue::addWorker);
+        assertDoesNotThrow(laneQueue::shutdown);
+
+        assertThrows(IllegalArgumentException.class, () -> new Config(1024, 2, 0, 0)
+                .withProducerType(ProducerType.SINGLE)
+                .withAutoScaling(AutoScaling.between(1, 4)));
+        Queue singleProducer = new Queue(new Config(1024, 2, 0, 0).withProducerType(ProducerType.SINGLE));
+        assertThrows(UnsupportedOperationException.class, singleProducer::addWorker);
+        assertThrows(UnsupportedOperationException.class, singleProducer::removeWorker);
+        assertDoesNotThrow(singleProducer::shutdown);
+    }
+
+    @Test
+    public void testDrainAndShutdownFinishesQueuedJobs() throws Exception {
+        Queue draining = new Queue(new Config(1024, 2, 3, 100));
+        AtomicInteger ran = new AtomicInteger();
+        for (int i = 0; i < 100; i++)
+            draining.submit(new Job("SampleFunction", "arg" + i, () -> {
+                LockSupport.parkNanos(100_000);
+                ran.incrementAndGet();
+            }));
+
+        assertTrue(draining.drainAndShutdown(5_000).isEmpty());
+        assertEquals(100, ran.get());
+        Job late = new Job("SampleFunction", "late", () -> {});
+        assertThrows(RejectedExecutionException.class, () -> draining.submit(late));
+        assertTrue(draining.submitAsync(new Job("SampleFunction", "late", () -> {})).isCompletedExceptionally());
+    }
+
+    @Test
+    public void testDrainReturnsJobsThatNeverRan() throws Exception {
+        drainReturnsJobsThatNeverRan(DispatchMode.PARALLEL);
+    }
+
+    @Test
+    public void testWorkStealingDrainReturnsJobsThatNeverRan() throws Exception {
+        drainReturnsJobsThatNeverRan(DispatchMode.WORK_STEALING);
+    }
+
+    private static void drainReturnsJobsThatNeverRan(DispatchMode dispatchMode) throws Exception {
+        Queue draining = new Queue(new Config(1024, 1, 3, 100).withDispatchMode(dispatchMode));
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger ran = new AtomicInteger();
+        draining.submit(blockingJob(release));
+        List<Job> queued = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Job job = new Job("SampleFunction", "arg" + i, ran::incrementAndGet);
+            queued.add(job);
+            draining.submit(job);
+        }
+        Job scheduled = new Job("ScheduledFunction", "later", ran::incrementAndGet);
+        draining.schedule(scheduled, 60_000);
+
+        List<Job> unrun = draining.drainAndShutdown(50);
+        queued.add(scheduled);
+        assertEquals(queued, unrun);
+        assertTrue(unrun.stream().allMatch(job -> job.getStatus() == JobStatus.QUEUED));
+        assertTrue(unrun.stream().allMatch(job -> draining.getJobStore().get(job.getKey()) == null),
+                "jobs handed back are no longer tracked");
+
+        // The consumer gets past the blocking job and finds the rest of its batch withdrawn
+        release.countDown();
+        Thread.sleep(50);
+        assertEquals(0, ran.get());
+    }
+
+    @Test
+    public void testDuplicatesShareTheOriginalOutcome() throws Exception {
+        Queue deduplicating = new Queue(new Config(1024, 1, 3, 100).withDeduplication(Deduplication.IDEMPOTENCY_KEY));
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger ran = new AtomicInteger();
+        deduplicating.submit(blockingJob(release));
+
+        Job original = new Job("SumFunction", "1,2", () -> ran.incrementAndGet() + 2);
+        original.setIdempotencyKey("sum-1");
+        Job duplicate = new Job("SumFunction", "1,2", () -> ran.incrementAndGet() + 2);
+        duplicate.setIdempotencyKey("sum-1");
+        Job unkeyed = new Job("SumFunction", "1,2", () -> ran.incrementAndGet() + 2);
+
+        JobHandle<?> first = deduplicating.submit(original);
+        JobHandle<?> second = deduplicating.submit(duplicate);
+        assertSame(original, second.getJob());
+        assertTrue(deduplicating.submit(new Job[]{duplicate, unkeyed}).isFullyAccepted());
+
+        release.countDown();
+        assertEquals(3, first.get(5, TimeUnit.SECONDS));
+        assertEquals(3, duplicate.getResult());
+        assertEquals(JobStatus.COMPLETED, duplicate.getStatus());
+        unkeyed.completion().get(5, TimeUnit.SECONDS);
+        assertEquals(2, ran.get());
+        assertEquals(2, deduplicating.captureQueueMetrics().coalesced());
+
+        // The key is free again once the original has finished
+        Job again = new Job("SumFunction", "1,2", () -> ran.incrementAndGet() + 2);
+        again.setIdempotencyKey("sum-1");
+        assertEquals(5, deduplicating.submit(again).get(5, TimeUnit.SECONDS));
+        deduplicating.shutdown();
+    }
+
+    @Test
+    public void testResubmittingFromTheCompletionCallbackRunsAgain() throws Exception {
+        Queue deduplicating = new Queue(new Config(1024, 1, 3, 100).withDeduplication(Deduplication.IDEMPOTENCY_KEY));
+        AtomicInteger ran = new AtomicInteger();
+        CompletableFuture<JobHandle<?>> resubmitted = new CompletableFuture<>();
+
+        Job first = new Job("SumFunction", "1,2", ran::incrementAndGet);
+        first.setIdempotencyKey("sum-1");
+        // Runs on the consumer as the job completes, before it has released its key
+        deduplicating.submit(first).toCompletableFuture().thenRun(() -> {
+            Job again = new Job("SumFunction", "1,2", ran::incrementAndGet);
+            again.setIdempotencyKey("sum-1");
+            resubmitted.complete(deduplicating.submit(again));
+        });
+
+        JobHandle<?> second = resubmitted.get(5, TimeUnit.SECONDS);
+        assertNotSame(first, second.getJob());
+        assertEquals(2, second.get(5, TimeUnit.SECONDS));
+        assertEquals(0, deduplicating.captureQueueMetrics().coalesced());
+        deduplicating.shutdown();
+    }
+
+    @Test
+    public void testDeduplicationByFunctionAndArgs() throws Exception {
+        Queue deduplicating = new Queue(new Config(1024, 1, 3, 100).withDeduplication(Deduplication.FUNCTION_AND_ARGS));
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger ran = new AtomicInteger();
+        deduplicating.submit(blockingJob(release));
+
+        Job original = new Job("FailingFunction", "arg1", () -> {
+            ran.incrementAndGet();
+            throw new IllegalStateException("Job failure simulation");
+        });
+        Job duplicate = new Job("FailingFunction", "arg1", ran::incrementAndGet);
+        Job otherArgs = new Job("FailingFunction", "arg2", ran::incrementAndGet);
+        deduplicating.submit(original);
+        assertSame(original, deduplicating.submit(duplicate).getJob());
+        assertSame(otherArgs, deduplicating.submit(otherArgs).getJob());
+
+        release.countDown();
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> duplicate.completion().get(5, TimeUnit.SECONDS));
+        assertInstanceOf(JobProcessingException.class, e.getCause());
+        assertEquals(JobStatus.FAILED, duplicate.getStatus());
+        otherArgs.completion().get(5, TimeUnit.SECONDS);
+        assertEquals(2, ran.get());
+        deduplicating.shutdown();
+    }
+
+    @Test
+    public void testBatchHandlerGetsConsecutiveJobsOfItsFunction() throws Exception {
+        List<String> ran = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        Batching batching = Batching.of(4, 0).withHandler("WriteRow", jobs -> {
+            batchSizes.add(jobs.size());
+            jobs.forEach(job -> ran.add(job.getArgs()));
+        });
+        Queue batched = new Queue(new Config(1024, 1, 3, 100).withBatching(batching));
+        CountDownLatch release = new CountDownLatch(1);
+        batched.submit(blockingJob(release));
+
+        List<String> expected = new ArrayList<>();
+        List<Job> jobs = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            String args = "row" + i;
+            // Every sixth job belongs to another function and cuts the current batch short
+            Job job = i % 6 == 5 ? new Job("Audit", args, () -> ran.add(args)) : new Job("WriteRow", args, () -> {});
+            expected.add(args);
+            jobs.add(job);
+            batched.submit(job);
+        }
+        release.countDown();
+        for (Job job : jobs)
+            job.completion().get(5, TimeUnit.SECONDS);
+
+        assertEquals(expected, ran);
+        assertEquals(10, batchSizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(batchSizes.stream().allMatch(size -> size <= 4));
+        assertTrue(batchSizes.size() < 10, "Expected grouped calls: " + batchSizes);
+        assertTrue(jobs.stream().allMatch(job -> job.getStatus() == JobStatus.COMPLETED));
+        assertEquals(13, batched.getWorkers().getFirst().getCompletedJobs());
+        batched.shutdown();
+    }
+
+    @Test
+    public void testFailedBatchRetriesEachJob() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        Batching batching = Batching.of(16, 0).withHandler("WriteRow", jobs -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("Bulk write failed");
+        });
+        Queue batched = new Queue(new Config(1024, 1, 3, 100).withBatching(batching));
+        List<Job> jobs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Job job = new Job("WriteRow", "row" + i, () -> {});
+            job.setRetryPolicy(RetryPolicy.exponential(1, 1, 1));
+            jobs.add(job);
+        }
+        batched.submit(jobs.toArray(new Job[0]));
+
+        for (Job job : jobs) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> job.completion().get(5, TimeUnit.SECONDS));
+            assertInstanceOf(JobProcessingException.class, e.getCause());
+            assertEquals(2, job.getAttempts());
+        }
+        Worker worker = batched.getWorkers().getFirst();
+        assertEquals(3, worker.getRetriedJobs());
+        assertEquals(3, worker.getFailedJobs());
+        assertTrue(calls.get() >= 2 && calls.get() <= 6);
+        batched.shutdown();
+    }
+
+    @Test
+    public void testRateLimitParksJobsWithoutHoldingUpOtherFunctions() throws Exception {
+        Throttling throttling = Throttling.none().withLimit("FragileFunction", RateLimit.perSecond(20));
+        Queue throttled = new Queue(new Config(1024, 1, 3, 100).withThrottling(throttling));
+        List<Job> fragile = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            Job job = new Job("FragileFunction", "arg" + i, () -> {});
+            fragile.add(job);
+            throttled.submit(job);
+        }
+        JobHandle<?> other = throttled.submit(new Job("SampleFunction", "arg", () -> {}));
+
+        other.get(5, TimeUnit.SECONDS);
+        assertTrue(fragile.stream().anyMatch(job -> job.getStatus() == JobStatus.QUEUED));
+        for (Job job : fragile)
+            job.completion().get(5, TimeUnit.SECONDS);
+        // The first permit is free; the other four come 50ms apart
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(150));
+
+        CapturedLimiterMetrics limiter = throttled.captureLimiterMetrics().getFirst();
+        assertEquals("FragileFunction", limiter.function());
+        assertEquals(4, limiter.throttled());
+        assertEquals(0, limiter.parked());
+        throttled.shutdown();
+    }
+
+    @Test
+    public void testMaxInFlightCapsConcurrentJobsOfAFunction() throws Exception {
+        Throttling throttling = Throttling.none().withLimit("CappedFunction", RateLimit.maxInFlight(2));
+        Queue throttled = new Queue(new Config(1024, 2, 3, 100)
+                .withExecutionMode(ExecutionMode.VIRTUAL_THREAD)
+                .withThrottling(throttling));
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        List<Job> jobs = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Job job = new Job("CappedFunction", "arg" + i, () -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+                running.decrementAndGet();
+            });
+            jobs.add(job);
+            throttled.submit(job);
+        }
+
+        for (Job job : jobs)
+            job.completion().get(5, TimeUnit.SECONDS);
+        assertTrue(peak.get() <= 2, "Peak concurrency " + peak.get());
+        CapturedLimiterMetrics limiter = throttled.captureLimiterMetrics().getFirst();
+        assertEquals(0, limiter.inFlight());
+        assertEquals(2, limiter.maxInFlight());
+        assertEquals(-1, limiter.availablePermits());
+        assertTrue(limiter.throttled() > 0);
+        String scrape = PrometheusFormat.format(new MetricsSample(), List.of(), throttled.captureLimiterMetrics());
+        assertTrue(scrape.contains("soonseo_limiter_in_flight{function=\"CappedFunction\"} 0\n"), scrape);
+        throttled.shutdown();
+    }
+
+    private static final SlotTask<AtomicLong> ADD = (total, value) -> {
+        if (value < 0)
+            throw new IllegalArgumentException("Negative amount: " + value);
+        return total.addAndGet(value);
+    };
+    private static final EventTranslatorTwoArg<JobEvent, AtomicLong, Long> ADD_TRANSLATOR =
+            (event, sequence, total, value) -> event.setTask("AddFunction", "", ADD, total, value);
+
+    @Test
+    public void testPublishRunsJobsStraightFromTheirSlots() throws Exception {
+        AtomicLong total = new AtomicLong();
+        for (long i = 1; i <= 100; i++)
+            assertTrue(queue.publish(ADD_TRANSLATOR, total, i));
+
+        awaitCompleted(queue, 100);
+        assertEquals(5050, total.get());
+        assertEquals(100, queue.captureQueueMetrics().queued());
+        assertEquals(100, queue.captureFunctionMetrics("AddFunction").execution().count());
+        // Nothing to track: published jobs never became a Job
+        assertEquals(0, queue.getJobStore().size());
+    }
+
+    @Test
+    public void testSubmittedJobReleasesWhatAPublishedOneLeftInItsSlot() {
+        JobEvent slot = new JobEvent();
+        AtomicLong total = new AtomicLong();
+        ADD_TRANSLATOR.translateTo(slot, 0, total, 5L);
+        slot.published(null, System.nanoTime());
+
+        Job job = new Job("Submitted", "args", () -> null);
+        slot.setJob(job);
+        assertNull(slot.getPayload());
+        assertEquals("Submitted", slot.getFunction());
+        assertFalse(slot.claim(), "a slot carrying a Job is never claimed as a published one");
+    }
+
+    @Test
+    public void testFailedPublishedJobBecomesAJob() throws Exception {
+        Queue virtual = new Queue(new Config(1024, 2, 3, 100).withExecutionMode(ExecutionMode.VIRTUAL_THREAD));
+        AtomicLong total = new AtomicLong();
+        virtual.publish(ADD_TRANSLATOR, total, 5L);
+        virtual.publish(ADD_TRANSLATOR, total, -1L);
+        virtual.publish(ADD_TRANSLATOR, total, 7L);
+        queue.publish(ADD_TRANSLATOR, total, -1L);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((virtual.captureQueueMetrics().failed() < 1 || queue.captureQueueMetrics().failed() < 1)
+                && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        awaitCompleted(virtual, 2);
+        assertEquals(12, total.get());
+        assertEquals(1, virtual.captureQueueMetrics().failed());
+        assertEquals(1, queue.captureQueueMetrics().failed());
+        virtual.shutdown();
+    }
+
+    @Test
+    public void testDrainReturnsPublishedJobsThatNeverRan() throws Exception {
+        Queue draining = new Queue(new Config(1024, 1, 3, 100));
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicLong total = new AtomicLong();
+        draining.submit(blockingJob(release));
+        for (long i = 1; i <= 3; i++)
+            draining.publish(ADD_TRANSLATOR, total, i);
+
+        List<Job> unrun = draining.drainAndShutdown(50);
+        assertEquals(3, unrun.size());
+        assertTrue(unrun.stream().allMatch(job -> job.getFunction().equals("AddFunction")));
+
+        release.countDown();
+        Thread.sleep(50);
+        assertEquals(0, total.get());
+        // The handed-back jobs still carry their slot's work
+        unrun.getFirst().run();
+        assertEquals(1, total.get());
+    }
+
+    private static void awaitCompleted(Queue queue, long completed) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queue.captureQueueMetrics().completed() < completed && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        assertEquals(completed, queue.captureQueueMetrics().completed());
+    }
 
     @Test
     public void testShutdown() {
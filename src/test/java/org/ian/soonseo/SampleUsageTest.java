@@ -6,6 +6,7 @@ import org.ian.soonseo.exception.JobProcessingException;
 import org.ian.soonseo.metrics.CapturedJobMetrics;
 import org.ian.soonseo.metrics.CapturedQueueMetrics;
 import org.ian.soonseo.metrics.CapturedWorkerMetrics;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -24,6 +25,11 @@ public class SampleUsageTest {
         queue = new Queue(config);
     }
 
+    @AfterEach
+    public void tearDown() throws Exception {
+        queue.shutdown();
+    }
+
     @Test
     public void testSubmitAndProcessJobs() throws JobProcessingException, InterruptedException {
         Job job1 = new Job("Function1", "arg1,arg2", () -> System.out.println("Job 1 executed"));
@@ -49,7 +55,7 @@ public class SampleUsageTest {
     }
 
     @Test
-    public void testJobRetry() throws JobProcessingException, InterruptedException {
+    public void testJobRetry() throws Exception {
         Config smallBufferConfig = new Config(1, 2, 3, 50);
         Queue retryQueue = new Queue(smallBufferConfig);
 
@@ -66,6 +72,7 @@ public class SampleUsageTest {
 
         CapturedQueueMetrics queueMetrics = retryQueue.captureQueueMetrics();
         assertEquals(2, queueMetrics.queued());
+        retryQueue.shutdown();
     }
 
     @Test
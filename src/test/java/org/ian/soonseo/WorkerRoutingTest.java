@@ -0,0 +1,55 @@
+package org.ian.soonseo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WorkerRoutingTest {
+
+    private static List<Worker> workers(int count) {
+        List<Worker> workers = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            workers.add(new Worker());
+        return workers;
+    }
+
+    @Test
+    public void testKeysOnlyMoveToTheNewWorker() {
+        WorkerRouting before = WorkerRouting.of(workers(4));
+        Worker added = new Worker();
+        WorkerRouting after = before.with(added, 100);
+
+        int moved = 0;
+        for (int i = 0; i < 1_000; i++) {
+            String key = "account-" + i;
+            assertSame(before.owner(500, key), before.owner(501, key), "a key's owner does not depend on the sequence");
+            Worker owner = after.owner(500, key);
+            if (owner != before.owner(500, key)) {
+                assertSame(added, owner);
+                moved++;
+            }
+            // Claimed before the new worker joined, so it still belongs to the old owner
+            assertSame(before.owner(50, key), after.owner(50, key));
+        }
+        assertTrue(moved > 100 && moved < 350, "moved " + moved + " of 1000 keys");
+    }
+
+    @Test
+    public void testRemovedWorkersKeysMoveToSurvivors() {
+        List<Worker> workers = workers(4);
+        WorkerRouting before = WorkerRouting.of(workers);
+        WorkerRouting after = before.without(workers.getLast());
+
+        for (int i = 0; i < 1_000; i++) {
+            String key = "account-" + i;
+            if (before.owner(10, key) != workers.getLast())
+                assertSame(before.owner(10, key), after.owner(10, key));
+            else
+                assertNotSame(workers.getLast(), after.owner(10, key));
+        }
+    }
+
+}
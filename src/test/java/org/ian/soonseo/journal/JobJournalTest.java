@@ -0,0 +1,148 @@
+package org.ian.soonseo.journal;
+
+import org.ian.soonseo.Config;
+import org.ian.soonseo.Durability;
+import org.ian.soonseo.FunctionRegistry;
+import org.ian.soonseo.Job;
+import org.ian.soonseo.JobHandle;
+import org.ian.soonseo.Priority;
+import org.ian.soonseo.Queue;
+import org.ian.soonseo.utils.IdGenerator;
+import org.ian.soonseo.utils.JobId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JobJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private static long segmentFiles(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    public void testReplaysOnlyUnfinishedJobs() throws Exception {
+        JobId done = IdGenerator.nextId();
+        JobId failed = IdGenerator.nextId();
+        JobId pending = IdGenerator.nextId();
+
+        try (JobJournal journal = JobJournal.open(directory, 4096, 10)) {
+            journal.awaitDurable(journal.submitted(done, "Done", "a", Priority.NORMAL));
+            journal.submitted(failed, "Failed", "b", Priority.NORMAL);
+            journal.submitted(pending, "Pending", "c,ü", Priority.HIGH, "account-7");
+            journal.started(done);
+            journal.completed(done);
+            journal.failed(failed);
+        }
+
+        try (JobJournal journal = JobJournal.open(directory, 4096, 10)) {
+            List<RecoveredJob> recovered = journal.recovered();
+            assertEquals(List.of(new RecoveredJob(pending, "Pending", "c,ü", Priority.HIGH, "account-7")), recovered);
+        }
+    }
+
+    @Test
+    public void testCompactsFinishedSegments() throws Exception {
+        try (JobJournal journal = JobJournal.open(directory, 1024, 10)) {
+            JobId survivor = IdGenerator.nextId();
+            journal.submitted(survivor, "Survivor", "", Priority.NORMAL);
+            for (int i = 0; i < 100; i++) {
+                JobId id = IdGenerator.nextId();
+                journal.submitted(id, "Short", "arg" + i, Priority.NORMAL);
+                journal.completed(id);
+            }
+
+            // The survivor pins the first segment and, with it, every segment after it
+            assertTrue(journal.segmentCount() > 2);
+            assertEquals(journal.segmentCount(), segmentFiles(directory));
+
+            journal.completed(survivor);
+            assertEquals(1, journal.segmentCount());
+            // Files are deleted by the sync thread
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (segmentFiles(directory) > 1 && System.nanoTime() < deadline)
+                Thread.sleep(1);
+            assertEquals(1, segmentFiles(directory));
+        }
+
+        try (JobJournal journal = JobJournal.open(directory, 1024, 10)) {
+            assertTrue(journal.recovered().isEmpty());
+        }
+    }
+
+    @Test
+    public void testQueueRecoversUnfinishedJobs() throws Exception {
+        ConcurrentLinkedQueue<String> replayed = new ConcurrentLinkedQueue<>();
+        FunctionRegistry registry = new FunctionRegistry()
+                .register("Replayable", args -> () -> replayed.add(args));
+        Config config = new Config(1024, 1, 3, 100)
+                .withDurability(Durability.journal(directory, registry).withSegmentSize(64 * 1024));
+
+        Queue first = new Queue(config);
+        first.submit(new Job("Replayable", "done", () -> {}));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        first.submit(new Job("Replayable", "blocked", () -> {
+            started.countDown();
+            release.await();
+            return null;
+        }));
+        first.submit(new Job("Replayable", "waiting", () -> {}));
+        // The single consumer only starts the blocked job after recording the first one as completed
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        first.shutdown(); // the journal is closed while both jobs are unfinished, as after a crash
+
+        Queue second = new Queue(config);
+        List<JobHandle<?>> recovered = second.getRecoveredJobs();
+        assertEquals(List.of("blocked", "waiting"), recovered.stream().map(handle -> handle.getJob().getArgs()).toList());
+        for (JobHandle<?> handle : recovered)
+            handle.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("blocked", "waiting"), List.copyOf(replayed));
+        second.shutdown();
+
+        Queue third = new Queue(config);
+        assertTrue(third.getRecoveredJobs().isEmpty());
+        third.shutdown();
+        release.countDown();
+    }
+
+    @Test
+    public void testDrainedJobsLeaveTheJournal() throws Exception {
+        FunctionRegistry registry = new FunctionRegistry()
+                .register("Replayable", args -> () -> null);
+        Config config = new Config(1024, 1, 3, 100)
+                .withDurability(Durability.journal(directory, registry).withSegmentSize(64 * 1024));
+
+        Queue first = new Queue(config);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        first.submit(new Job("Replayable", "blocked", () -> {
+            started.countDown();
+            release.await();
+            return null;
+        }));
+        first.submit(new Job("Replayable", "handed back", () -> {}));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("handed back"), first.drainAndShutdown(50).stream().map(Job::getArgs).toList());
+
+        // Only the job that was still running at the deadline is left to replay
+        Queue second = new Queue(config);
+        assertEquals(List.of("blocked"), second.getRecoveredJobs().stream().map(handle -> handle.getJob().getArgs()).toList());
+        second.shutdown();
+        release.countDown();
+    }
+
+}
@@ -0,0 +1,77 @@
+package org.ian.soonseo.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected + expected / 32 + 1,
+                "expected ~" + expected + " but was " + actual);
+    }
+
+    @Test
+    public void testPercentilesOfUniformValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 100_000; i++)
+            histogram.record(i * 1_000);
+
+        CapturedLatencyMetrics metrics = histogram.capture();
+        assertEquals(100_000, metrics.count());
+        assertWithin(50_000_000, metrics.p50());
+        assertWithin(99_000_000, metrics.p99());
+        assertWithin(99_900_000, metrics.p999());
+        assertEquals(100_000_000, metrics.max());
+        assertEquals(5_000_050_000_000L, metrics.sum());
+    }
+
+    @Test
+    public void testSampleMatchesCapture() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        LatencySample sample = new LatencySample();
+        histogram.sample(sample);
+        assertEquals(0, sample.count());
+        assertEquals(0, sample.p999());
+
+        for (long i = 1; i <= 10_000; i++)
+            histogram.record(i * 7_919);
+        histogram.sample(sample);
+
+        CapturedLatencyMetrics metrics = histogram.capture();
+        assertEquals(metrics.count(), sample.count());
+        assertEquals(metrics.sum(), sample.sum());
+        assertEquals(metrics.p50(), sample.p50());
+        assertEquals(metrics.p99(), sample.p99());
+        assertEquals(metrics.p999(), sample.p999());
+        assertEquals(metrics.max(), sample.max());
+    }
+
+    @Test
+    public void testEveryValueMapsBackIntoItsBucket() {
+        long[] values = {0, 1, 63, 64, 65, 127, 128, 1_000, 123_456_789, Long.MAX_VALUE / 3, Long.MAX_VALUE};
+        for (long value : values) {
+            int index = LatencyHistogram.indexOf(value);
+            long highest = LatencyHistogram.highestEquivalentValue(index);
+            assertTrue(highest >= value, "bucket for " + value + " ends at " + highest);
+            assertTrue(highest - value <= value / 32, "bucket for " + value + " is too wide");
+        }
+    }
+
+    @Test
+    public void testEmptyAndTailHeavy() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(new CapturedLatencyMetrics(0, 0, 0, 0, 0, 0), histogram.capture());
+
+        for (int i = 0; i < 999; i++)
+            histogram.record(10_000);
+        histogram.record(5_000_000_000L);
+
+        CapturedLatencyMetrics metrics = histogram.capture();
+        assertWithin(10_000, metrics.p50());
+        assertWithin(10_000, metrics.p99());
+        assertWithin(10_000, metrics.p999());
+        assertEquals(5_000_000_000L, metrics.max());
+    }
+
+}
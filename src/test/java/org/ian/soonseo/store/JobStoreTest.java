@@ -0,0 +1,115 @@
+package org.ian.soonseo.store;
+
+import org.ian.soonseo.Config;
+import org.ian.soonseo.Job;
+import org.ian.soonseo.JobStatus;
+import org.ian.soonseo.Queue;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JobStoreTest {
+
+    private static Job terminalJob(JobStore store) {
+        Job job = new Job("SampleFunction", "arg1,arg2", () -> {});
+        store.track(job);
+        job.setStatus(JobStatus.COMPLETED);
+        store.onTerminal(job);
+        return job;
+    }
+
+    @Test
+    public void testBoundedStoreEvictsOldestTerminalJobs() {
+        BoundedJobStore store = new BoundedJobStore(2, Duration.ofMinutes(1));
+
+        Job inFlight = new Job("SampleFunction", "arg1,arg2", () -> {});
+        store.track(inFlight);
+        Job first = terminalJob(store);
+        Job second = terminalJob(store);
+        Job third = terminalJob(store);
+
+        assertEquals(3, store.size());
+        assertNotNull(store.get(inFlight.getKey()));
+        assertNull(store.get(first.getKey()));
+        assertNotNull(store.get(second.getKey()));
+        assertNotNull(store.get(third.getKey()));
+    }
+
+    @Test
+    public void testMalformedKeysAreNotFound() {
+        List<JobStore> stores = List.of(new BoundedJobStore(2, Duration.ofMinutes(1)), new InFlightJobStore(),
+                new UnboundedJobStore(), new SampledJobStore(new UnboundedJobStore(), 1.0));
+        for (JobStore store : stores) {
+            Job job = new Job("SampleFunction", "arg1,arg2", () -> {});
+            store.track(job);
+            String key = job.getKey();
+
+            assertSame(job, store.get(key));
+            assertNull(store.get("not-a-job-id"), store.getClass().getSimpleName());
+            assertNull(store.get(key.replace('-', 'x')));
+            assertNull(store.get("g" + key.substring(1)));
+            assertNull(store.get(null));
+        }
+    }
+
+    @Test
+    public void testBoundedStoreExpiresTerminalJobs() throws InterruptedException {
+        BoundedJobStore store = new BoundedJobStore(100, Duration.ofMillis(50));
+        terminalJob(store);
+        terminalJob(store);
+
+        Thread.sleep(100);
+
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testInFlightStoreDropsTerminalJobs() {
+        InFlightJobStore store = new InFlightJobStore();
+        Job job = terminalJob(store);
+
+        assertNull(store.get(job.getKey()));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testSampledStoreTracksFraction() {
+        SampledJobStore store = new SampledJobStore(new UnboundedJobStore(), 0.1);
+        SampledJobStore none = new SampledJobStore(new UnboundedJobStore(), 0.0);
+        List<Job> jobs = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            Job job = new Job("SampleFunction", "arg" + i, () -> {});
+            jobs.add(job);
+            store.track(job);
+            none.track(job);
+        }
+
+        assertTrue(store.size() > 500 && store.size() < 1500, "Unexpected sample size " + store.size());
+        assertEquals(0, none.size());
+        jobs.forEach(store::untrack);
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testQueueMemoryStaysFlat() throws Exception {
+        Queue queue = new Queue(new Config(1024, 2, 3, 100), new BoundedJobStore(100, Duration.ofMinutes(1)));
+        CountDownLatch latch = new CountDownLatch(5_000);
+
+        for (int i = 0; i < 5_000; i++)
+            queue.submit(new Job("SampleFunction", "arg" + i, latch::countDown));
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Thread.sleep(100);
+
+        assertEquals(100, queue.captureJobMetrics().size());
+        assertEquals(5_000, queue.captureQueueMetrics().queued());
+        queue.shutdown();
+    }
+
+}
@@ -0,0 +1,84 @@
+package org.ian.soonseo.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdGeneratorTest {
+
+    @Test
+    public void testIdFormat() {
+        String id = IdGenerator.genId();
+        UUID uuid = UUID.fromString(id);
+
+        assertEquals(JobId.LENGTH, id.length());
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+        assertEquals(id, uuid.toString());
+    }
+
+    @Test
+    public void testIdsAreMonotonic() {
+        JobId previous = IdGenerator.nextId();
+        String previousKey = previous.toString();
+
+        for (int i = 0; i < 100_000; i++) {
+            JobId next = IdGenerator.nextId();
+            String nextKey = next.toString();
+
+            assertTrue(next.compareTo(previous) > 0);
+            assertTrue(nextKey.compareTo(previousKey) > 0, previousKey + " >= " + nextKey);
+
+            previous = next;
+            previousKey = nextKey;
+        }
+    }
+
+    @Test
+    public void testIdsAreMonotonicPerThreadAndUniqueAcrossThreads() throws Exception {
+        int threads = 4;
+        int perThread = 50_000;
+        Set<JobId> ids = ConcurrentHashMap.newKeySet();
+        List<Future<Boolean>> ordered = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            for (int t = 0; t < threads; t++) {
+                ordered.add(executor.submit(() -> {
+                    JobId previous = IdGenerator.nextId();
+                    ids.add(previous);
+                    boolean monotonic = true;
+                    for (int i = 1; i < perThread; i++) {
+                        JobId next = IdGenerator.nextId();
+                        monotonic &= next.compareTo(previous) > 0;
+                        ids.add(next);
+                        previous = next;
+                    }
+                    return monotonic;
+                }));
+            }
+            for (Future<Boolean> thread : ordered)
+                assertTrue(thread.get());
+        }
+        assertEquals(threads * perThread, ids.size());
+    }
+
+    @Test
+    public void testRoundTrip() {
+        JobId id = IdGenerator.nextId();
+        JobId parsed = JobId.fromString(id.toString());
+
+        assertEquals(id, parsed);
+        assertEquals(id.hashCode(), parsed.hashCode());
+        assertEquals(System.currentTimeMillis(), id.getTimestamp(), 1000);
+        assertThrows(IllegalArgumentException.class, () -> JobId.fromString("not-a-job-id"));
+    }
+
+}